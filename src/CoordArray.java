@@ -0,0 +1,64 @@
+/*
+ *  An array of two-dimensional coordinates. This is the primary input to the
+ *  ordering algorithms.
+ *
+ *  Unlike an array of Coord objects, subclasses can store the coordinates
+ *  however suits them, such as in primitive arrays (CoordArrayFloat). This
+ *  avoids an object per location, which matters for surveys with millions
+ *  of locations.
+ *
+ *  The distance methods use exactly the same arithmetic as Coord, so the
+ *  ordering of a line does not depend on how its coordinates are stored.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public abstract class CoordArray
+  {
+    public abstract int length ();
+    public abstract float x (int i);
+    public abstract float y (int i);
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public Coord coord (int i)
+      { return new Coord (x (i), y (i)); }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  See Coord.distanceHypot.
+
+    public float distanceHypot (int i, int j)
+      {
+        float a = Math.abs (x (i) - x (j));
+        float b = Math.abs (y (i) - y (j));
+        if (a < b)                                //  Make sure a is biggest.
+          { float t = a; a = b; b = t; }
+        if (a == 0)
+            return 0;
+        float r = b / a;
+        return a * (float) Math.sqrt (1 + r*r);
+      }
+
+    public float distanceSq (int i, int j)
+      {
+        float dx = x (i) - x (j), dy = y (i) - y (j);
+        return dx * dx + dy * dy;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Copy the coordinates with the given indices into a new array.
+
+    public CoordArrayFloat subset (int indices [])
+      {
+        int m = indices.length;
+        CoordArrayFloat subset = new CoordArrayFloat (m);
+        for (int i = 0; i < m; i++)
+            subset.set (i, x (indices[i]), y (indices[i]));
+        return subset;
+      }
+  }
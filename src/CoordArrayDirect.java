@@ -0,0 +1,84 @@
+/*
+ *  An array of coordinates stored outside the Java heap in a direct buffer,
+ *  with all of the x values followed by all of the y values.
+ *
+ *  Call "close" once the coordinates are no longer needed, which frees the
+ *  memory at once. As with WeightsPackedDirect, closing twice does nothing
+ *  and using the coordinates afterwards throws IllegalStateException.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class CoordArrayDirect extends CoordArray implements AutoCloseable
+  {
+    private final int n;
+    private ByteBuffer bytes;
+    private FloatBuffer buffer;
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public CoordArrayDirect (int n)
+      {
+        assert n >= 0 && n <= Integer.MAX_VALUE / 8 : "n = " + n;
+        this.n = n;
+        bytes = ByteBuffer.allocateDirect (8 * n).order (ByteOrder.nativeOrder ());
+        buffer = bytes.asFloatBuffer ();
+      }
+
+    public CoordArrayDirect (CoordArray coords)
+      {
+        this (coords.length ());
+        for (int i = 0; i < n; i++)
+            set (i, coords.x (i), coords.y (i));
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int length ()
+      { return n; }
+
+    @Override
+    public float x (int i)
+      { return open ().get (i); }
+
+    @Override
+    public float y (int i)
+      { return open ().get (n + i); }
+
+    public void set (int i, float x, float y)
+      {
+        assert i >= 0 && i < n : "i = " + i;
+        open ().put (i, x);
+        buffer.put (n + i, y);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private FloatBuffer open ()
+      {
+        if (buffer == null)
+            throw new IllegalStateException ("Coordinates have been closed");
+        return buffer;
+      }
+
+    @Override
+    public void close ()
+      {
+        if (buffer == null)
+            return;
+        ByteBuffer closing = bytes;
+        buffer = null;
+        bytes = null;
+        WeightsPackedDirect.free (closing);
+      }
+  }
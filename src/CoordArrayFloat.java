@@ -0,0 +1,68 @@
+/*
+ *  An array of coordinates stored as two primitive float arrays.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class CoordArrayFloat extends CoordArray
+  {
+    private final float x [], y [];
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public CoordArrayFloat (int n)
+      {
+        x = new float [n];
+        y = new float [n];
+      }
+
+    //  The arrays are used directly, not copied.
+
+    public CoordArrayFloat (float x [], float y [])
+      {
+        assert x.length == y.length;
+        this.x = x;
+        this.y = y;
+      }
+
+    public CoordArrayFloat (Coord coords [])
+      {
+        this (coords.length);
+        for (int i = 0; i < coords.length; i++)
+          {
+            x[i] = coords[i].x ();
+            y[i] = coords[i].y ();
+          }
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int length ()
+      { return x.length; }
+
+    @Override
+    public float x (int i)
+      { return x[i]; }
+
+    @Override
+    public float y (int i)
+      { return y[i]; }
+
+    public void set (int i, float x, float y)
+      { this.x[i] = x; this.y[i] = y; }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The underlying arrays, which must not be modified.
+
+    float [] xArray ()
+      { return x; }
+
+    float [] yArray ()
+      { return y; }
+  }
@@ -12,6 +12,8 @@ import static CrossSpreadOrder.SystemCall.methodName;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Random;
+
 import org.junit.Test;
 
 ///////////////////////////////////////////////////////////////////////////////
@@ -46,4 +48,38 @@ public class CoordTest
        assertEquals (c1.distanceSq (c3), 4, tol);
        assertEquals (c1.distanceSq (c4), 9, tol);
     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  CoordArray distances must be identical to those of Coord.
+
+   @Test
+   public void coordArray ()
+     {
+       printf ("%s: %s%n%n", className(), methodName());
+
+       Random rand = new Random (3101);
+       int n = 200;
+       Coord coords [] = new Coord [n];
+       for (int i = 0; i < n; i++)
+           coords[i] = new Coord (1000 * rand.nextFloat (),
+                                  (i % 10 == 0 ? 0 : 1000) * rand.nextFloat ());
+       CoordArray array = new CoordArrayFloat (coords);
+
+       assertEquals (n, array.length ());
+       for (int i = 0; i < n; i++)
+         {
+           assertTrue (array.coord (i).equals (coords[i]));
+           for (int j = 0; j < n; j++)
+             {
+               assertTrue (array.distanceHypot (i, j) ==
+                           coords[i].distanceHypot (coords[j]));
+               assertTrue (array.distanceSq (i, j) ==
+                           coords[i].distanceSq (coords[j]));
+             }
+         }
+
+       CoordArray subset = array.subset (new int [] { 7, 3 });
+       assertTrue (subset.coord (0).equals (coords[7]));
+       assertTrue (subset.coord (1).equals (coords[3]));
+     }
 }
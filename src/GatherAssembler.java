@@ -0,0 +1,512 @@
+/**
+ *  Sort the traces of a survey into cross-spread gathers, using the orderings
+ *  of the shot lines and receiver lines.
+ *
+ *  A cross-spread is the set of traces recorded from the shots of one shot
+ *  line into the receivers of one receiver line. Within it, each trace is
+ *  placed by the rank of its shot along the shot line's path and the rank
+ *  of its receiver along the receiver line's path (see OrderLocns). Traces
+ *  are passed on grouped by cross-spread, in the order the shot lines were
+ *  added and then the order the receiver lines were added, and within a
+ *  cross-spread by shot rank and then receiver rank. Traces that tie keep
+ *  the order they were added in.
+ *
+ *  A survey can have billions of traces, so they are sorted externally. The
+ *  traces are gathered into runs of at most setRunSize traces, each run is
+ *  sorted in memory and written to a temporary file, and the runs are then
+ *  merged, at most setFanIn at a time. Memory is therefore bounded by the
+ *  run size however many traces there are. If every trace fits in one run,
+ *  nothing is written to disk.
+ *
+ *  Each trace is given as the line and point numbers of its shot and
+ *  receiver, as in SPS files (see SpsReader). Traces whose shot or receiver
+ *  is not on any line added are skipped and counted (see numUnassigned).
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class GatherAssembler implements AutoCloseable
+{
+  //  Each trace in a run file is a little-endian long trace number and four
+  //  ints: shot line index, receiver line index, shot rank, receiver rank.
+
+  private static final int RECORD_SIZE = 24;
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final Path tempDir;
+  private int runSize = 1 << 22;
+  private int fanIn = 64;
+
+  private final HashMap <Double, Stations> shotLines = new HashMap <> (),
+                                           receiverLines = new HashMap <> ();
+  private final ArrayList <Double> shotLineNumbers = new ArrayList <> (),
+                                   receiverLineNumbers = new ArrayList <> ();
+
+  //  The current run.
+
+  private long traces [];
+  private int shotLine [], receiverLine [], shotRank [], receiverRank [];
+  private int runLength = 0;
+
+  private final ArrayList <Path> runs = new ArrayList <> ();
+  private long numUnassigned = 0;
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Receives the traces in gather order.
+
+  public interface Sink
+    {
+      void accept (long trace, double shotLine, double receiverLine,
+                   int shotRank, int receiverRank) throws IOException;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Runs are written to temporary files in this directory.
+
+  public GatherAssembler (Path tempDir)
+    { this.tempDir = tempDir; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The most traces sorted in memory at once. Set before adding traces.
+
+  void setRunSize (int runSize)
+    {
+      assert runSize > 0 && traces == null;
+      this.runSize = runSize;
+    }
+
+  //  The most runs merged at once.
+
+  void setFanIn (int fanIn)
+    {
+      assert fanIn > 1;
+      this.fanIn = fanIn;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Add a line and its path. pointNumbers[i] is the point number of
+  //  location i, and path is its ordering.
+
+  public void addShotLine (double lineNumber, double pointNumbers [],
+                           int path [])
+    { addLine (shotLines, shotLineNumbers, lineNumber, pointNumbers, path); }
+
+  public void addReceiverLine (double lineNumber, double pointNumbers [],
+                               int path [])
+    {
+      addLine (receiverLines, receiverLineNumbers, lineNumber, pointNumbers,
+               path);
+    }
+
+  public void addShotLine (SpsReader.Line line, OrderResult result)
+    { addShotLine (line.lineNumber (), line.pointNumbers (), result.path ()); }
+
+  public void addReceiverLine (SpsReader.Line line, OrderResult result)
+    {
+      addReceiverLine (line.lineNumber (), line.pointNumbers (),
+                       result.path ());
+    }
+
+  private static void addLine (HashMap <Double, Stations> lines,
+                               ArrayList <Double> lineNumbers,
+                               double lineNumber, double pointNumbers [],
+                               int path [])
+    {
+      assert pointNumbers.length == path.length;
+      lineNumber = lineNumber == 0 ? 0 : lineNumber;
+      if (lines.containsKey (lineNumber))
+          throw new IllegalArgumentException ("Line " + lineNumber +
+                                              " was already added");
+      lines.put (lineNumber, new Stations (lineNumbers.size (), pointNumbers,
+                                           path));
+      lineNumbers.add (lineNumber);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Add a trace, with the line and point numbers of its shot and receiver.
+  //  Its shot and receiver lines must already have been added.
+
+  public void addTrace (long trace, double shotLineNumber, double shotPoint,
+                        double receiverLineNumber, double receiverPoint)
+      throws IOException
+    {
+      Stations shots = shotLines.get (shotLineNumber == 0 ? 0 :
+                                      shotLineNumber);
+      Stations receivers = receiverLines.get (receiverLineNumber == 0 ? 0 :
+                                              receiverLineNumber);
+      int sRank = shots == null ? -1 : shots.rank (shotPoint);
+      int rRank = receivers == null ? -1 : receivers.rank (receiverPoint);
+      if (sRank < 0 || rRank < 0)
+        {
+          numUnassigned++;
+          return;
+        }
+
+      if (traces == null)
+        {
+          traces = new long [runSize];
+          shotLine = new int [runSize];
+          receiverLine = new int [runSize];
+          shotRank = new int [runSize];
+          receiverRank = new int [runSize];
+        }
+      else if (runLength == runSize)
+          runs.add (writeRun (sortRun ()));
+
+      traces[runLength] = trace;
+      shotLine[runLength] = shots.index;
+      receiverLine[runLength] = receivers.index;
+      shotRank[runLength] = sRank;
+      receiverRank[runLength] = rRank;
+      runLength++;
+    }
+
+  //  The number of traces skipped because their shot or receiver was not
+  //  found.
+
+  public long numUnassigned ()
+    { return numUnassigned; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Pass every trace added to the sink, in gather order, then start again
+  //  with no traces (the lines are kept).
+
+  public void assemble (Sink sink) throws IOException
+    {
+      if (runs.isEmpty ())
+        {
+          int order [] = sortRun ();
+          for (int k : order)
+              sink.accept (traces[k], shotLineNumbers.get (shotLine[k]),
+                           receiverLineNumbers.get (receiverLine[k]),
+                           shotRank[k], receiverRank[k]);
+          runLength = 0;
+          return;
+        }
+
+      if (runLength > 0)
+          runs.add (writeRun (sortRun ()));
+      runLength = 0;
+
+      //  Merge level by level, each consecutive group of fanIn runs into
+      //  one, so that every trace is read once per level. Keeping the runs
+      //  in order keeps ties in the order they were added.
+
+      while (runs.size () > fanIn)
+        {
+          ArrayList <Path> merged = new ArrayList <> (),
+                           created = new ArrayList <> ();
+          try
+            {
+              for (int start = 0; start < runs.size (); start += fanIn)
+                {
+                  int end = Math.min (start + fanIn, runs.size ());
+                  List <Path> group = runs.subList (start, end);
+                  if (group.size () == 1)
+                    {
+                      merged.add (group.get (0));
+                      continue;
+                    }
+                  Path run = Files.createTempFile (tempDir, "gather", ".run");
+                  merged.add (run);
+                  created.add (run);
+                  try (RunWriter writer = new RunWriter (run))
+                    {
+                      merge (group, (trace, sLine, rLine, sRank, rRank) ->
+                          writer.write (trace, sLine, rLine, sRank, rRank));
+                    }
+                }
+            }
+          catch (IOException | RuntimeException e)
+            {
+              deleteRuns (created);
+              throw e;
+            }
+          for (Path run : runs)
+              if (! merged.contains (run))
+                  Files.delete (run);
+          runs.clear ();
+          runs.addAll (merged);
+        }
+
+      merge (runs, (trace, sLine, rLine, sRank, rRank) ->
+          sink.accept (trace, shotLineNumbers.get (sLine),
+                       receiverLineNumbers.get (rLine), sRank, rRank));
+      deleteRuns (runs);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Delete any temporary files left by a failure.
+
+  @Override
+  public void close () throws IOException
+    { deleteRuns (runs); }
+
+  private static void deleteRuns (List <Path> runs)
+      throws IOException
+    {
+      for (Path run : runs)
+          Files.deleteIfExists (run);
+      runs.clear ();
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The order of the traces in the current run: a stable radix sort on the
+  //  ranks and then on the lines.
+
+  private int [] sortRun ()
+    {
+      int n = runLength;
+      long keys [] = new long [n];
+      for (int k = 0; k < n; k++)
+          keys[k] = (long) shotRank[k] << 32 | receiverRank[k];
+      int byRank [] = SortIndex.argsort (keys);
+      for (int k = 0; k < n; k++)
+        {
+          int j = byRank[k];
+          keys[k] = (long) shotLine[j] << 32 | receiverLine[j];
+        }
+      int byLine [] = SortIndex.argsort (keys);
+      int order [] = new int [n];
+      for (int k = 0; k < n; k++)
+          order[k] = byRank[byLine[k]];
+      return order;
+    }
+
+  private Path writeRun (int order []) throws IOException
+    {
+      Path run = Files.createTempFile (tempDir, "gather", ".run");
+      try (RunWriter writer = new RunWriter (run))
+        {
+          for (int k : order)
+              writer.write (traces[k], shotLine[k], receiverLine[k],
+                            shotRank[k], receiverRank[k]);
+        }
+      runLength = 0;
+      return run;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Merge sorted runs, with a heap of the runs keyed on their next trace.
+  //  The sink is given line indices rather than line numbers.
+
+  private interface IndexSink
+    {
+      void accept (long trace, int shotLine, int receiverLine, int shotRank,
+                   int receiverRank) throws IOException;
+    }
+
+  private static void merge (List <Path> runs, IndexSink sink)
+      throws IOException
+    {
+      int numRuns = runs.size ();
+      RunReader readers [] = new RunReader [numRuns];
+      try
+        {
+          int heap [] = new int [numRuns];
+          int heapSize = 0;
+          for (int r = 0; r < numRuns; r++)
+            {
+              readers[r] = new RunReader (runs.get (r));
+              if (readers[r].next ())
+                  heap[heapSize++] = r;
+            }
+          for (int k = heapSize / 2 - 1; k >= 0; k--)
+              siftDown (heap, heapSize, k, readers);
+
+          while (heapSize > 0)
+            {
+              RunReader reader = readers[heap[0]];
+              sink.accept (reader.trace, reader.shotLine, reader.receiverLine,
+                           reader.shotRank, reader.receiverRank);
+              if (! reader.next ())
+                  heap[0] = heap[--heapSize];
+              siftDown (heap, heapSize, 0, readers);
+            }
+        }
+      finally
+        {
+          for (RunReader reader : readers)
+              if (reader != null)
+                  reader.close ();
+        }
+    }
+
+  private static void siftDown (int heap [], int heapSize, int k,
+                                RunReader readers [])
+    {
+      while (2 * k + 1 < heapSize)
+        {
+          int child = 2 * k + 1;
+          if (child + 1 < heapSize &&
+              before (heap[child + 1], heap[child], readers))
+              child++;
+          if (! before (heap[child], heap[k], readers))
+              return;
+          int t = heap[k]; heap[k] = heap[child]; heap[child] = t;
+          k = child;
+        }
+    }
+
+  //  Whether run a's next trace comes before run b's. Ties go to the
+  //  earlier run.
+
+  private static boolean before (int a, int b, RunReader readers [])
+    {
+      RunReader ra = readers[a], rb = readers[b];
+      int c = Long.compare (ra.lineKey, rb.lineKey);
+      if (c == 0)
+          c = Long.compare (ra.rankKey, rb.rankKey);
+      return c < 0 || c == 0 && a < b;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  private static class RunWriter implements AutoCloseable
+    {
+      private final FileChannel channel;
+      private final ByteBuffer buffer = ByteBuffer.allocateDirect (BUFFER_SIZE)
+                                          .order (ByteOrder.LITTLE_ENDIAN);
+
+      RunWriter (Path file) throws IOException
+        {
+          channel = FileChannel.open (file, StandardOpenOption.WRITE,
+                                      StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+      void write (long trace, int shotLine, int receiverLine, int shotRank,
+                  int receiverRank) throws IOException
+        {
+          if (buffer.remaining () < RECORD_SIZE)
+              flush ();
+          buffer.putLong (trace).putInt (shotLine).putInt (receiverLine)
+                .putInt (shotRank).putInt (receiverRank);
+        }
+
+      private void flush () throws IOException
+        {
+          buffer.flip ();
+          while (buffer.hasRemaining ())
+              channel.write (buffer);
+          buffer.clear ();
+        }
+
+      @Override
+      public void close () throws IOException
+        {
+          try
+            { flush (); }
+          finally
+            { channel.close (); }
+        }
+    }
+
+  private static class RunReader implements AutoCloseable
+    {
+      private final FileChannel channel;
+      private final ByteBuffer buffer = ByteBuffer.allocateDirect (BUFFER_SIZE)
+                                          .order (ByteOrder.LITTLE_ENDIAN);
+      long trace, lineKey, rankKey;
+      int shotLine, receiverLine, shotRank, receiverRank;
+
+      RunReader (Path file) throws IOException
+        {
+          channel = FileChannel.open (file, StandardOpenOption.READ);
+          buffer.limit (0);
+        }
+
+      //  Read the next trace, returning false at the end of the run.
+
+      boolean next () throws IOException
+        {
+          if (buffer.remaining () < RECORD_SIZE)
+            {
+              buffer.compact ();
+              while (buffer.position () < RECORD_SIZE)
+                  if (channel.read (buffer) < 0)
+                    {
+                      if (buffer.position () > 0)
+                          throw new IOException ("Gather run is truncated");
+                      buffer.flip ();
+                      return false;
+                    }
+              buffer.flip ();
+            }
+          trace = buffer.getLong ();
+          shotLine = buffer.getInt ();
+          receiverLine = buffer.getInt ();
+          shotRank = buffer.getInt ();
+          receiverRank = buffer.getInt ();
+          lineKey = (long) shotLine << 32 | receiverLine;
+          rankKey = (long) shotRank << 32 | receiverRank;
+          return true;
+        }
+
+      @Override
+      public void close () throws IOException
+        { channel.close (); }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The rank of each point of a line along its path, looked up by point
+  //  number.
+
+  private static class Stations
+    {
+      final int index;
+      private final double points [];
+      private final int ranks [];
+
+      Stations (int index, double pointNumbers [], int path [])
+        {
+          this.index = index;
+          int n = path.length;
+          int rankOf [] = new int [n];
+          for (int k = 0; k < n; k++)
+              rankOf[path[k]] = k;
+
+          long keys [] = new long [n];
+          for (int i = 0; i < n; i++)
+            {
+              long bits = Double.doubleToLongBits (pointNumbers[i] == 0 ? 0 :
+                                                   pointNumbers[i]);
+              keys[i] = bits < 0 ? bits ^ Long.MAX_VALUE : bits;
+            }
+          int order [] = SortIndex.argsort (keys);
+          points = new double [n];
+          ranks = new int [n];
+          for (int k = 0; k < n; k++)
+            {
+              points[k] = pointNumbers[order[k]] == 0 ? 0 :
+                          pointNumbers[order[k]];
+              ranks[k] = rankOf[order[k]];
+            }
+        }
+
+      //  Returns -1 if there is no such point.
+
+      int rank (double pointNumber)
+        {
+          int k = Arrays.binarySearch (points, pointNumber == 0 ? 0 :
+                                               pointNumber);
+          return k < 0 ? -1 : ranks[k];
+        }
+    }
+}
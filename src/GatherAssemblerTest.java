@@ -0,0 +1,189 @@
+/**
+ *  Unit test for GatherAssembler.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class GatherAssemblerTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Sorting externally, with several merge passes, must give the same
+  //  gathers as sorting in memory, which must match a simple stable sort.
+
+  @Test
+  public void assemble () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4901);
+      int numShotLines = 6, numReceiverLines = 5, lineSize = 40;
+      int shotPaths [] [] = new int [numShotLines] [],
+          receiverPaths [] [] = new int [numReceiverLines] [];
+      double points [] = new double [lineSize];
+      for (int i = 0; i < lineSize; i++)
+          points[i] = 100 + 2.5 * i;
+      for (int line = 0; line < numShotLines; line++)
+          shotPaths[line] = randomPath (rand, lineSize);
+      for (int line = 0; line < numReceiverLines; line++)
+          receiverPaths[line] = randomPath (rand, lineSize);
+
+      //  Traces and their expected keys: line indices, then ranks.
+
+      int numTraces = 20000;
+      double traceHeaders [] [] = new double [numTraces] [];
+      ArrayList <long []> expected = new ArrayList <> ();
+      int numMissing = 0;
+      for (int t = 0; t < numTraces; t++)
+        {
+          int sLine = rand.nextInt (numShotLines + 1),
+              rLine = rand.nextInt (numReceiverLines),
+              s = rand.nextInt (lineSize), r = rand.nextInt (lineSize);
+          traceHeaders[t] = new double [] { 10 + sLine, points[s],
+                                            50 + rLine, points[r] };
+          if (sLine == numShotLines)              //  No such shot line.
+              numMissing++;
+          else
+              expected.add (new long [] { t, sLine, rLine,
+                                          rank (shotPaths[sLine], s),
+                                          rank (receiverPaths[rLine], r) });
+        }
+      expected.sort ((a, b) ->
+        {
+          for (int k = 1; k < 5; k++)
+              if (a[k] != b[k])
+                  return Long.compare (a[k], b[k]);
+          return 0;
+        });
+
+      Path dir = Files.createTempDirectory ("gather");
+      try
+        {
+          for (int runSize : new int [] { numTraces, 700 })
+            {
+              try (GatherAssembler assembler = new GatherAssembler (dir))
+                {
+                  assembler.setRunSize (runSize);
+                  assembler.setFanIn (3);
+                  for (int line = 0; line < numShotLines; line++)
+                      assembler.addShotLine (10 + line, points,
+                                             shotPaths[line]);
+                  for (int line = 0; line < numReceiverLines; line++)
+                      assembler.addReceiverLine (50 + line, points,
+                                                 receiverPaths[line]);
+                  for (int t = 0; t < numTraces; t++)
+                      assembler.addTrace (t, traceHeaders[t][0],
+                                          traceHeaders[t][1],
+                                          traceHeaders[t][2],
+                                          traceHeaders[t][3]);
+                  assertEquals (numMissing, assembler.numUnassigned ());
+
+                  ArrayList <long []> gathers = new ArrayList <> ();
+                  assembler.assemble ((trace, sLine, rLine, sRank, rRank) ->
+                      gathers.add (new long [] { trace, (long) sLine - 10,
+                                                 (long) rLine - 50, sRank,
+                                                 rRank }));
+                  assertEquals (expected.size (), gathers.size ());
+                  for (int k = 0; k < gathers.size (); k++)
+                      assertArrayEquals (expected.get (k), gathers.get (k));
+                }
+              try (var files = Files.list (dir))
+                { assertEquals (0, files.count ()); }
+            }
+        }
+      finally
+        { Files.delete (dir); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Time sorting a million traces through disk.
+
+  @Test
+  public void timing () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4902);
+      int lineSize = 1000;
+      double points [] = new double [lineSize];
+      for (int i = 0; i < lineSize; i++)
+          points[i] = i;
+      Path dir = Files.createTempDirectory ("gather");
+      try (GatherAssembler assembler = new GatherAssembler (dir))
+        {
+          assembler.setRunSize (1 << 17);
+          for (int line = 0; line < 10; line++)
+            {
+              assembler.addShotLine (line, points, randomPath (rand, lineSize));
+              assembler.addReceiverLine (line, points,
+                                         randomPath (rand, lineSize));
+            }
+
+          int numTraces = 1000000;
+          Timer timer = new Timer ();
+          for (int t = 0; t < numTraces; t++)
+              assembler.addTrace (t, rand.nextInt (10),
+                                  rand.nextInt (lineSize), rand.nextInt (10),
+                                  rand.nextInt (lineSize));
+          long previous [] = { Long.MIN_VALUE, Long.MIN_VALUE };
+          int count [] = new int [1];
+          assembler.assemble ((trace, sLine, rLine, sRank, rRank) ->
+            {
+              long lineKey = (long) sLine << 32 | (long) rLine,
+                   rankKey = (long) sRank << 32 | rRank;
+              assertTrue (lineKey > previous[0] ||
+                          lineKey == previous[0] && rankKey >= previous[1]);
+              previous[0] = lineKey;
+              previous[1] = rankKey;
+              count[0]++;
+            });
+          assertEquals (numTraces, count[0]);
+          printf ("   %d traces in %.2f s%n%n", numTraces, timer.elapsed ());
+        }
+      finally
+        { Files.delete (dir); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static int rank (int path [], int i)
+    {
+      for (int k = 0; k < path.length; k++)
+          if (path[k] == i)
+              return k;
+      return -1;
+    }
+
+  private static int [] randomPath (Random rand, int n)
+    {
+      int path [] = new int [n];
+      for (int i = 0; i < n; i++)
+          path[i] = i;
+      for (int i = n - 1; i > 0; i--)
+        {
+          int j = rand.nextInt (i + 1);
+          int t = path[i];
+          path[i] = path[j];
+          path[j] = t;
+        }
+      return path;
+    }
+}
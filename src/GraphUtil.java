@@ -74,13 +74,25 @@ public class GraphUtil
        return degrees;
      }
 
+   //  The tree is walked with an explicit stack rather than by recursion,
+   //  as a line-shaped tree of many vertices would overflow the call stack.
+
    static private void degrees (Adjacent adjacent, int vertex, int degrees [])
      {
+       int stack [] = new int [adjacent.numVertices ()];
+       int size = 0;
        degrees[vertex] = adjacent.degree (vertex);
-       Set <Integer> neighbors = adjacent.neighbors (vertex);
-       for (int i  : neighbors)
-           if (degrees[i] == 0)
-               degrees (adjacent, i, degrees);
+       stack[size++] = vertex;
+       while (size > 0)
+         {
+           Set <Integer> neighbors = adjacent.neighbors (stack[--size]);
+           for (int i : neighbors)
+               if (degrees[i] == 0)
+                 {
+                   degrees[i] = adjacent.degree (i);
+                   stack[size++] = i;
+                 }
+         }
      }
 
    /////////////////////////////////////////////////////////////////////////////
@@ -120,19 +132,37 @@ public class GraphUtil
      }
 
    static private boolean isTree
-          (Adjacent adjacent, boolean isVisited [], int vertex, int grandParent)
+          (Adjacent adjacent, boolean isVisited [], int start, int grandParent)
      {
-       assert vertex >= 0 && vertex < adjacent.numVertices ();
-       assert isVisited.length >= adjacent.numVertices();
+       int n = adjacent.numVertices ();
+       assert start >= 0 && start < n;
+       assert isVisited.length >= n;
 
-       if (isVisited[vertex])      // Is there a loop?
-           return false;
-       isVisited[vertex] = true;
+       //  Depth-first with an explicit stack of (vertex, parent) pairs. A
+       //  tree pushes each vertex once, so more than n pushes means a loop.
 
-       Set <Integer> neighbors = adjacent.neighbors (vertex);
-       for (int i : neighbors)
-           if (i != grandParent && ! isTree (adjacent, isVisited, i, vertex))
+       int stack [] = new int [n], parents [] = new int [n];
+       int size = 0, numPushed = 1;
+       stack[size] = start;
+       parents[size++] = grandParent;
+       while (size > 0)
+         {
+           size--;
+           int vertex = stack[size], parent = parents[size];
+           if (isVisited[vertex])      // Is there a loop?
                return false;
+           isVisited[vertex] = true;
+
+           Set <Integer> neighbors = adjacent.neighbors (vertex);
+           for (int i : neighbors)
+               if (i != parent)
+                 {
+                   if (numPushed++ == n)
+                       return false;
+                   stack[size] = i;
+                   parents[size++] = vertex;
+                 }
+         }
        return true;
      }
 
@@ -164,9 +194,24 @@ public class GraphUtil
        int n = adjacent.numVertices ();
        for (int i = 0; i < n-1; i++)
            edges[i] = -1;
-       Set <Integer> neighbors = adjacent.neighbors (n-1);
-       for (int i : neighbors)
-           setEdges (adjacent, edges, n-1, i);
+       //  Walk outwards from vertex n-1 with an explicit stack (see degrees).
+
+       int stack [] = new int [n];
+       int size = 0;
+       stack[size++] = n-1;
+       while (size > 0)
+         {
+           int from = stack[--size];
+           int parent = from == n-1 ? -1 : edges[from];
+           Set <Integer> neighbors = adjacent.neighbors (from);
+           for (int to : neighbors)
+               if (to != parent)
+                 {
+                   assert to != n-1 && edges[to] == -1;
+                   edges[to] = from;
+                   stack[size++] = to;
+                 }
+         }
 
        for (int i = 0; i < n-1; i++)
            assert edges[i] != -1;
@@ -174,19 +219,52 @@ public class GraphUtil
        return edges;
      }
 
-   static private void setEdges (Adjacent adjacent, int edges [],
-                                 int from, int to)
+   /////////////////////////////////////////////////////////////////////////////
+   //  Convert the n-1 edges (a[e],b[e]) of a tree to the form of
+   //  MinSpanTree.edges, in which edges[i] is the neighbour of vertex i
+   //  towards vertex n-1.
+
+   static public int [] edges (int n, int a [], int b [])
      {
-       assert edges[to] == -1;
-       assert from >= 0 && from < adjacent.numVertices ();
-       assert to >= 0 && to < adjacent.numVertices ();
-       assert to != from;
-
-       edges[to] = from;
-       Set <Integer> neighbors = adjacent.neighbors (to);
-       for (int i : neighbors)
-           if (i != from)
-               setEdges (adjacent, edges, to, i);
+       if (n <= 1)
+           return new int [0];
+       int start [] = new int [n + 1];
+       for (int e = 0; e < n-1; e++)
+         {
+           start[a[e] + 1] ++;
+           start[b[e] + 1] ++;
+         }
+       for (int v = 0; v < n; v++)
+           start[v+1] += start[v];
+       int neighbours [] = new int [2 * (n-1)], fill [] = start.clone ();
+       for (int e = 0; e < n-1; e++)
+         {
+           neighbours[fill[a[e]]++] = b[e];
+           neighbours[fill[b[e]]++] = a[e];
+         }
+
+       int edges [] = new int [n-1];
+       int queue [] = new int [n];
+       boolean visited [] = new boolean [n];
+       queue[0] = n-1;
+       visited[n-1] = true;
+       int numQueued = 1;
+       for (int q = 0; q < numQueued; q++)
+         {
+           int u = queue[q];
+           for (int k = start[u]; k < start[u+1]; k++)
+             {
+               int v = neighbours[k];
+               if (! visited[v])
+                 {
+                   visited[v] = true;
+                   edges[v] = u;
+                   queue[numQueued++] = v;
+                 }
+             }
+         }
+       assert numQueued == n : "Not a tree";
+       return edges;
      }
 
    static public boolean areEdgesASpanningTree (int edges [])
@@ -0,0 +1,66 @@
+/**
+ *  A 64-bit fingerprint of a line: its coordinates together with the
+ *  ordering algorithm and settings (see OrderLocns.signature). Two lines with
+ *  the same fingerprint are, with overwhelming probability, identical and
+ *  would be given the same path, so a stored path can be reused when a
+ *  revised survey leaves the line unchanged (see OrderStore).
+ *
+ *  The fingerprint depends only on the bits of the coordinates, in order,
+ *  and the characters of the signature, so it is the same on every run and
+ *  every machine. Minus zero is treated as zero.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class LineFingerprint
+{
+  private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  public static long of (CoordArray coords, OrderLocns order)
+    { return of (coords, order.signature ()); }
+
+  public static long of (CoordArray coords, String signature)
+    {
+      int n = coords.length ();
+      long hash = n;
+      for (int k = 0; k < signature.length (); k++)
+          hash = add (hash, signature.charAt (k));
+      hash = mix (hash);
+      for (int i = 0; i < n; i++)
+        {
+          hash = add (hash, bits (coords.x (i)));
+          hash = add (hash, bits (coords.y (i)));
+        }
+      return mix (hash);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static int bits (float f)
+    { return Float.floatToIntBits (f == 0 ? 0 : f); }
+
+  private static long add (long hash, int value)
+    {
+      hash = (hash ^ (value & 0xFFFFFFFFL)) * MULTIPLIER;
+      return hash ^ (hash >>> 29);
+    }
+
+  //  Spread the bits of the hash (the MurmurHash3 finalizer).
+
+  private static long mix (long hash)
+    {
+      hash ^= hash >>> 33;
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= hash >>> 33;
+      hash *= 0xc4ceb9fe1a85ec53L;
+      hash ^= hash >>> 33;
+      return hash;
+    }
+}
@@ -12,12 +12,19 @@
  *     2. We set the polarity of the direction so that xDir >= 0.
  *        If Xdir is zero then we set yDir >= 0.
  *
+ *  The points can also be gathered one at a time, without holding them in
+ *  memory, with a LineFit2DAccumulator. fitParallel uses one per chunk of
+ *  points and merges them. Both work in double precision, so their results
+ *  can differ from fit's in the last bits.
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
 
 package CrossSpreadOrder;
 
+import java.util.stream.IntStream;
+
 ////////////////////////////////////////////////////////////////////////////////
 
 public class LineFit2D
@@ -66,6 +73,56 @@ public class LineFit2D
           sum2 += square (y[i] - yAvg);
           sum3 += (x[i] - xAvg) * (y[i] - yAvg);
         }
+      setFit (xAvg, yAvg, sum1, sum2, sum3);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Fit to the points gathered by an accumulator.
+
+  public void fit (LineFit2DAccumulator accumulator)
+    {
+      assert accumulator.count () >= 2;
+      setFit (accumulator.xMean (), accumulator.yMean (), accumulator.sxx (),
+              accumulator.syy (), accumulator.sxy ());
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Fit using a parallel reduction: each chunk of points is accumulated on
+  //  its own thread and the accumulators are merged.
+
+  public void fitParallel (final float x [], final float y [])
+    {
+      assert x.length == y.length;
+      int n = x.length;
+      int numChunks = (n + CHUNK - 1) / CHUNK;
+
+      LineFit2DAccumulator total = IntStream.range (0, numChunks).parallel ()
+          .mapToObj (c ->
+            {
+              LineFit2DAccumulator accumulator = new LineFit2DAccumulator ();
+              accumulator.add (x, y, c * CHUNK, Math.min (n, (c + 1) * CHUNK));
+              return accumulator;
+            })
+          .reduce (new LineFit2DAccumulator (), (a, b) ->
+            {
+              LineFit2DAccumulator sum = new LineFit2DAccumulator ();
+              sum.merge (a);
+              sum.merge (b);
+              return sum;
+            });
+      fit (total);
+    }
+
+  private static final int CHUNK = 1 << 16;
+
+  //  Set the line through the mean along the major axis of the second
+  //  moments.
+
+  private void setFit (double xMean, double yMean, double sum1, double sum2,
+                       double sum3)
+    {
+      xAvg = (float) xMean;
+      yAvg = (float) yMean;
       if (sum1 != sum2 || sum3 != 0)
         {
           double theta = .5 * Math.atan2 (2 * sum3, sum1 - sum2);
@@ -0,0 +1,83 @@
+/*
+ *  Accumulate the statistics that LineFit2D needs (the count, means and
+ *  second moments of the points) in a single pass, one point at a time.
+ *
+ *  This uses Welford's updates in double precision, so it stays accurate for
+ *  millions of points far from the origin, and the points never need to be
+ *  held in memory. Accumulators of separate parts of the data, such as from
+ *  different threads or files, can be merged (Chan et al.'s formula) to give
+ *  the same result as accumulating all of the points in one.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class LineFit2DAccumulator
+{
+  private long n = 0;
+  private double xMean = 0, yMean = 0;
+  private double sxx = 0, syy = 0, sxy = 0;     //  Sums of squared deviations
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  public void add (double x, double y)
+    {
+      n++;
+      double dx = x - xMean, dy = y - yMean;
+      xMean += dx / n;
+      yMean += dy / n;
+      sxx += dx * (x - xMean);
+      syy += dy * (y - yMean);
+      sxy += dx * (y - yMean);
+    }
+
+  public void add (final float x [], final float y [], int from, int to)
+    {
+      assert x.length == y.length;
+      for (int i = from; i < to; i++)
+          add (x[i], y[i]);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Add the points of another accumulator to this one.
+
+  public void merge (LineFit2DAccumulator other)
+    {
+      if (other.n == 0)
+          return;
+      long total = n + other.n;
+      double dx = other.xMean - xMean, dy = other.yMean - yMean;
+      double weight = (double) n * other.n / total;
+
+      xMean += dx * other.n / total;
+      yMean += dy * other.n / total;
+      sxx += other.sxx + dx * dx * weight;
+      syy += other.syy + dy * dy * weight;
+      sxy += other.sxy + dx * dy * weight;
+      n = total;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  public long count ()
+    { return n; }
+
+  public double xMean ()
+    { return xMean; }
+
+  public double yMean ()
+    { return yMean; }
+
+  double sxx ()
+    { return sxx; }
+
+  double syy ()
+    { return syy; }
+
+  double sxy ()
+    { return sxy; }
+}
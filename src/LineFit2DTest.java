@@ -322,4 +322,98 @@ public class LineFit2DTest
           }
         printf ("%n");
      }
- }
\ No newline at end of file
+
+    /////////////////////////////////////////////////////////////////////////////
+    //  The parallel fit must agree with the serial one. Its means are more
+    //  accurate, as the serial fit sums in single precision.
+
+    @Test
+    public void parallel ()
+      {
+        printf ("%s: %s%n%n", className(), methodName());
+        Random rand = new Random (4201);
+
+        for (int test = 0; test < 20; test++)
+          {
+            int n = 2 + rand.nextInt (test < 10 ? 100 : 500000);
+            float x [] = new float [n];
+            float y [] = new float [n];
+            double angle = 2 * Math.PI * rand.nextDouble ();
+            double xMean = 0, yMean = 0;
+            for (int i = 0; i < n; i++)
+              {
+                double z = 1000 * rand.nextDouble ();
+                x[i] = (float) (5000 + z * Math.cos (angle) + rand.nextGaussian ());
+                y[i] = (float) (-300 + z * Math.sin (angle) + rand.nextGaussian ());
+                xMean += x[i];
+                yMean += y[i];
+              }
+            xMean /= n;
+            yMean /= n;
+
+            LineFit2D serial = new LineFit2D ();
+            LineFit2D parallel = new LineFit2D ();
+            serial.fit (x, y);
+            parallel.fitParallel (x, y);
+
+            assertEquals (xMean, parallel.xAvg(), .001F);
+            assertEquals (yMean, parallel.yAvg(), .001F);
+            assertEquals (serial.xAvg(), parallel.xAvg(), 1F);
+            assertEquals (serial.yAvg(), parallel.yAvg(), 1F);
+            assertEquals (serial.xDir(), parallel.xDir(), 1e-4F);
+            assertEquals (serial.yDir(), parallel.yDir(), 1e-4F);
+          }
+      }
+
+    /////////////////////////////////////////////////////////////////////////////
+    //  Accumulating the points in parts and merging must give the same fit
+    //  as accumulating them all at once, and agree with the array fit.
+
+    @Test
+    public void accumulator ()
+      {
+        printf ("%s: %s%n%n", className(), methodName());
+        Random rand = new Random (4301);
+
+        for (int test = 0; test < 200; test++)
+          {
+            int n = 2 + rand.nextInt (test < 100 ? 50 : 50000);
+            float x [] = new float [n];
+            float y [] = new float [n];
+            double angle = 2 * Math.PI * rand.nextDouble ();
+            for (int i = 0; i < n; i++)
+              {
+                double z = 1000 * rand.nextDouble ();
+                x[i] = (float) (1e5 + z * Math.cos (angle) + rand.nextGaussian ());
+                y[i] = (float) (3e6 + z * Math.sin (angle) + rand.nextGaussian ());
+              }
+
+            LineFit2DAccumulator all = new LineFit2DAccumulator ();
+            all.add (x, y, 0, n);
+
+            LineFit2DAccumulator merged = new LineFit2DAccumulator ();
+            for (int from = 0; from < n; )
+              {
+                int to = Math.min (n, from + 1 + rand.nextInt (n));
+                LineFit2DAccumulator part = new LineFit2DAccumulator ();
+                part.add (x, y, from, to);
+                merged.merge (part);
+                from = to;
+              }
+            assertEquals (n, merged.count ());
+            assertEquals (all.xMean (), merged.xMean (), 1e-6);
+            assertEquals (all.yMean (), merged.yMean (), 1e-6);
+            assertEquals (all.sxx (), merged.sxx (), 1e-9 * all.sxx ());
+            assertEquals (all.sxy (), merged.sxy (), 1e-9 * all.sxx ());
+
+            LineFit2D arrayFit = new LineFit2D ();
+            LineFit2D accumulatorFit = new LineFit2D ();
+            arrayFit.fitParallel (x, y);
+            accumulatorFit.fit (merged);
+            assertEquals (arrayFit.xAvg(), accumulatorFit.xAvg(), .01F);
+            assertEquals (arrayFit.yAvg(), accumulatorFit.yAvg(), .5F);
+            assertEquals (arrayFit.xDir(), accumulatorFit.xDir(), 1e-5F);
+            assertEquals (arrayFit.yDir(), accumulatorFit.yDir(), 1e-5F);
+          }
+      }
+ }
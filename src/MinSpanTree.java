@@ -26,4 +26,11 @@ public abstract class MinSpanTree
 
   public float weight (int n, Weights weights)
     { return edgesWeight (weights, edges (n, weights)); }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The MST of coordinates, with the same weights as WeightsEuclid.
+  //  Derived classes may be able to avoid calculating every weight.
+
+  public int [] edges (CoordArray coords)
+    { return edges (coords.length (), new WeightsEuclidLazy (coords)); }
  }
@@ -0,0 +1,600 @@
+/**
+ *  A Euclidean minimum spanning tree that is kept up to date as locations
+ *  are inserted, deleted and moved, rather than rebuilt from nothing.
+ *
+ *  Each location keeps the identifier it was given when inserted, whatever
+ *  happens to the others.
+ *
+ *  Inserting location p uses the cycle property: the new MST lies within
+ *  the old MST plus edges from p. Nor need every edge from p be tried.
+ *  Divide the plane around p into eight 45 degree sectors. If u and v lie
+ *  in the same sector and u is nearer, then (p,v) is the longest edge of
+ *  triangle puv, so it can't be in the MST. Only the nearest location in
+ *  each sector is a candidate. Each candidate edge is added in turn, and
+ *  the heaviest edge on the cycle it closes is removed.
+ *
+ *  Deleting location v splits the tree into one part per neighbour of v.
+ *  Every remaining edge stays in the MST, so the parts need only be
+ *  rejoined: by the cut property, the lightest edge out of any part belongs
+ *  to the MST. The smallest part is joined each time, as it is the cheapest
+ *  to search from.
+ *
+ *  Both searches use a SpatialGrid of the locations. Locations inserted or
+ *  moved since the grid was built are kept in a short list that is
+ *  searched in full, and the grid is rebuilt once that list grows past
+ *  about sqrt(n). The nearest location in a sector is found by widening the
+ *  search radius until each sector has a location inside it, or until the
+ *  radius passes both the nearest location and the longest tree edge, as
+ *  no longer edge from p can be in the MST. Rejoining a part searches out
+ *  from each of its members no further than the best join found so far.
+ *
+ *  So for locations spread about evenly, inserting takes roughly constant
+ *  time plus O(sqrt(n)) for the list, and deleting O(m) when it splits off
+ *  parts of m locations in total (the smallest parts, as the largest is
+ *  never searched), compared with O(n^2) for rebuilding with Prim's
+ *  algorithm. Deleting from the middle of a line therefore takes O(n).
+ *  A few long edges or clumped locations make the searches wider.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.Arrays;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class MinSpanTreeDynamic
+{
+   private static final int NUM_SECTORS = 8;
+
+   private final Locations locations = new Locations ();
+   private boolean deleted [] = new boolean [16];
+   private int neighbours [] [] = new int [16] [];
+   private int degree [] = new int [16];
+   private int numLive = 0;
+   private double weight = 0;
+
+   //  Every live location is either in the grid, or in the recent list if
+   //  inserted or moved since the grid was built. The recent list may also
+   //  hold deleted locations, which are skipped. maxEdge is at least the
+   //  length of the longest tree edge.
+
+   private SpatialGrid grid = null;
+   private int gridIds = 0;
+   private int recent [] = new int [16];
+   private int numRecent = 0;
+   private float maxEdge = 0;
+
+   //  Work arrays, indexed by identifier. An entry is only valid if its
+   //  stamp matches the current one, so they need never be cleared.
+
+   private int parent [] = new int [16], label [] = new int [16];
+   private int stamp [] = new int [16];
+   private int queue [] = new int [16];
+   private int currentStamp = 0;
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public MinSpanTreeDynamic ()
+    { }
+
+  //  Start from a whole line at once. Location i is given identifier i.
+
+  public MinSpanTreeDynamic (CoordArray coords)
+    {
+      int n = coords.length ();
+      for (int i = 0; i < n; i++)
+          add (coords.x (i), coords.y (i));
+      numLive = n;
+      if (n >= 2)
+        {
+          int edges [] = new MinSpanTreeSpatial ().edges (coords);
+          for (int i = 0; i < n-1; i++)
+              addEdge (i, edges[i]);
+        }
+      buildGrid ();
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Insert a location, returning its identifier.
+
+  public int insert (float x, float y)
+    {
+      checkGrid ();
+      int p = add (x, y);
+      addRecent (p);
+      numLive++;
+      connect (p);
+      return p;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public void delete (int v)
+    {
+      assert ! isDeleted (v);
+      checkGrid ();
+      disconnect (v);
+      if (isInGrid (v))
+          grid.remove (v);
+      deleted[v] = true;
+      numLive--;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Move a location, keeping its identifier.
+
+  public void move (int v, float x, float y)
+    {
+      assert ! isDeleted (v);
+      checkGrid ();
+      disconnect (v);
+      if (isInGrid (v))
+        {
+          grid.remove (v);
+          addRecent (v);
+        }
+      locations.set (v, x, y);
+      connect (v);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public boolean isDeleted (int v)
+    {
+      assert v >= 0 && v < locations.length ();
+      return deleted[v];
+    }
+
+  //  The number of locations not deleted.
+
+  public int size ()
+    { return numLive; }
+
+  //  One more than the largest identifier given out.
+
+  public int numIds ()
+    { return locations.length (); }
+
+  //  The coordinates of every identifier, deleted or not. This is a view,
+  //  so it changes as locations are added and moved.
+
+  public CoordArray locations ()
+    { return locations; }
+
+  public float weight ()
+    { return (float) weight; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The identifiers of the locations not deleted, in increasing order.
+  //  Location i of coords, and vertex i of edges, is identifier
+  //  vertices()[i].
+
+  public int [] vertices ()
+    {
+      int vertices [] = new int [numLive];
+      int m = 0;
+      for (int v = 0; v < numIds (); v++)
+          if (! deleted[v])
+              vertices[m++] = v;
+      return vertices;
+    }
+
+  public CoordArrayFloat coords ()
+    { return locations.subset (vertices ()); }
+
+  //  The MST in the form of MinSpanTree.edges.
+
+  public int [] edges ()
+    {
+      int vertices [] = vertices ();
+      int index [] = new int [numIds ()];
+      for (int i = 0; i < numLive; i++)
+          index[vertices[i]] = i;
+
+      int a [] = new int [Math.max (0, numLive - 1)];
+      int b [] = new int [a.length];
+      int numEdges = 0;
+      for (int v : vertices)
+          for (int k = 0; k < degree[v]; k++)
+              if (neighbours[v][k] > v)
+                {
+                  a[numEdges] = index[v];
+                  b[numEdges++] = index[neighbours[v][k]];
+                }
+      assert numEdges == a.length;
+      return GraphUtil.edges (numLive, a, b);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Join live location p, which has no edges, to the tree.
+
+  private void connect (int p)
+    {
+      //  The nearest location in each sector around p.
+
+      if (numLive <= 1)
+          return;
+      int nearest [] = new int [NUM_SECTORS];
+      float nearestDist [] = new float [NUM_SECTORS];
+      Arrays.fill (nearest, -1);
+      Arrays.fill (nearestDist, Float.MAX_VALUE);
+      for (int r = 0; r < numRecent; r++)
+          consider (p, recent[r], nearest, nearestDist);
+
+      //  Widen the search until every sector is settled, or until any
+      //  location further away would be joined to p by the heaviest edge
+      //  of a cycle: through the nearest location, then along the tree.
+
+      float radius = numLive > 2 ? (float) weight / (numLive - 2) : maxEdge;
+      if (! (radius > 0))
+          radius = 1;
+      while (grid != null)
+        {
+          for (int v : grid.within (p, radius))
+              consider (p, v, nearest, nearestDist);
+          boolean isSettled = true;
+          float nearestAll = Float.MAX_VALUE;
+          for (int s = 0; s < NUM_SECTORS; s++)
+            {
+              isSettled &= nearestDist[s] <= radius;
+              nearestAll = Math.min (nearestAll, nearestDist[s]);
+            }
+          if (isSettled || radius >= Math.max (nearestAll, maxEdge) ||
+              radius == Float.POSITIVE_INFINITY)
+              break;
+          radius *= 2;
+        }
+
+      //  Add the candidate edges, lightest first, removing the heaviest
+      //  edge of any cycle formed.
+
+      boolean isConnected = false;
+      for (int s : SortIndex.argsort (nearestDist))
+        {
+          int v = nearest[s];
+          if (v < 0)
+              continue;
+          if (! isConnected)
+            {
+              addEdge (p, v);
+              isConnected = true;
+              continue;
+            }
+
+          //  Find the heaviest edge (a, parent[a]) on the tree path from
+          //  v back to p.
+
+          findPath (p, v);
+          int heaviest = -1;
+          float heaviestWeight = -1;
+          for (int a = v; a != p; a = parent[a])
+            {
+              float w = locations.distanceHypot (a, parent[a]);
+              if (w > heaviestWeight)
+                {
+                  heaviest = a;
+                  heaviestWeight = w;
+                }
+            }
+          if (nearestDist[s] < heaviestWeight)
+            {
+              removeEdge (heaviest, parent[heaviest]);
+              addEdge (p, v);
+            }
+        }
+    }
+
+  //  Make v a candidate for the sector around p that it lies in.
+
+  private void consider (int p, int v, int nearest [], float nearestDist [])
+    {
+      if (v == p || deleted[v])
+          return;
+      float dx = locations.x (v) - locations.x (p),
+            dy = locations.y (v) - locations.y (p);
+      int sector = (dy < 0 ? 4 : 0) + (dx < 0 ? 2 : 0) +
+                   (Math.abs (dx) < Math.abs (dy) ? 1 : 0);
+      float dist = locations.distanceHypot (p, v);
+      if (nearest[sector] < 0 || dist < nearestDist[sector] ||
+          dist == nearestDist[sector] && v < nearest[sector])
+        {
+          nearest[sector] = v;
+          nearestDist[sector] = dist;
+        }
+    }
+
+  //  Set parent[] along the tree path from v to p, by a breadth-first
+  //  search out from p.
+
+  private void findPath (int p, int v)
+    {
+      newStamp ();
+      stamp[p] = currentStamp;
+      queue[0] = p;
+      int numQueued = 1;
+      for (int q = 0; q < numQueued && stamp[v] != currentStamp; q++)
+        {
+          int u = queue[q];
+          for (int k = 0; k < degree[u]; k++)
+            {
+              int w = neighbours[u][k];
+              if (stamp[w] != currentStamp)
+                {
+                  stamp[w] = currentStamp;
+                  parent[w] = u;
+                  queue[numQueued++] = w;
+                }
+            }
+        }
+      assert stamp[v] == currentStamp;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Remove location v's edges and rejoin the parts of the tree this leaves.
+
+  private void disconnect (int v)
+    {
+      int k = degree[v];
+      int roots [] = Arrays.copyOf (neighbours[v], k);
+      for (int root : roots)
+          removeEdge (v, root);
+      if (k <= 1)
+          return;
+
+      //  Search out from every root at once, one location at a time each,
+      //  until all but one part has been fully searched. That part, called
+      //  the rest, may be huge, and is left unlabelled.
+
+      newStamp ();
+      stamp[v] = currentStamp;
+      label[v] = -1;
+      int members [] [] = new int [k] [];
+      int size [] = new int [k], next [] = new int [k];
+      for (int c = 0; c < k; c++)
+        {
+          members[c] = new int [] { roots[c] };
+          size[c] = 1;
+          stamp[roots[c]] = currentStamp;
+          label[roots[c]] = c;
+        }
+      int numActive = k;
+      boolean active [] = new boolean [k];
+      Arrays.fill (active, true);
+      while (numActive > 1)
+          for (int c = 0; c < k && numActive > 1; c++)
+            {
+              if (! active[c])
+                  continue;
+              if (next[c] == size[c])
+                {
+                  active[c] = false;
+                  numActive--;
+                  continue;
+                }
+              int u = members[c][next[c]++];
+              for (int j = 0; j < degree[u]; j++)
+                {
+                  int w = neighbours[u][j];
+                  if (stamp[w] != currentStamp)
+                    {
+                      stamp[w] = currentStamp;
+                      label[w] = c;
+                      if (size[c] == members[c].length)
+                          members[c] = Arrays.copyOf (members[c], 2 * size[c]);
+                      members[c][size[c]++] = w;
+                    }
+                }
+            }
+      int rest = 0;
+      while (! active[rest])
+          rest++;
+
+      //  Join the smallest part to its nearest location in any other part.
+      //  The root of another part gives a first bound on the join, and each
+      //  member need then only search out to the best join so far.
+
+      for (int numParts = k; numParts > 1; numParts--)
+        {
+          int c = -1;
+          for (int d = 0; d < k; d++)
+              if (d != rest && size[d] > 0 && (c < 0 || size[d] < size[c]))
+                  c = d;
+          if (grid == null || (long) size[c] * numRecent > numIds ())
+              buildGrid ();
+
+          int bestA = members[c][0], bestB = -1;
+          float bestWeight = Float.MAX_VALUE;
+          for (int root : roots)
+              if (partOf (root, rest) != c &&
+                  locations.distanceHypot (bestA, root) < bestWeight)
+                {
+                  bestB = root;
+                  bestWeight = locations.distanceHypot (bestA, root);
+                }
+          for (int i = 0; i < size[c]; i++)
+            {
+              int a = members[c][i];
+              for (int b : grid.within (a, bestWeight))
+                  if (b != v && partOf (b, rest) != c &&
+                      locations.distanceHypot (a, b) < bestWeight)
+                    {
+                      bestA = a;
+                      bestB = b;
+                      bestWeight = locations.distanceHypot (a, b);
+                    }
+              for (int r = 0; r < numRecent; r++)
+                {
+                  int b = recent[r];
+                  if (deleted[b] || b == v || partOf (b, rest) == c)
+                      continue;
+                  float w = locations.distanceHypot (a, b);
+                  if (w < bestWeight)
+                    {
+                      bestA = a;
+                      bestB = b;
+                      bestWeight = w;
+                    }
+                }
+            }
+          addEdge (bestA, bestB);
+
+          //  Merge the part into the one it was joined to.
+
+          int d = partOf (bestB, rest);
+          for (int i = 0; i < size[c]; i++)
+              label[members[c][i]] = d;
+          if (d != rest)
+            {
+              if (size[d] + size[c] > members[d].length)
+                  members[d] = Arrays.copyOf (members[d], size[d] + size[c]);
+              System.arraycopy (members[c], 0, members[d], size[d], size[c]);
+              size[d] += size[c];
+            }
+          size[c] = 0;
+        }
+    }
+
+  private int partOf (int u, int rest)
+    { return stamp[u] == currentStamp && label[u] >= 0 ? label[u] : rest; }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Rebuild the grid from every live location, emptying the recent list.
+
+  private void buildGrid ()
+    {
+      grid = new SpatialGrid (locations);
+      gridIds = numIds ();
+      numRecent = 0;
+      maxEdge = 0;
+      for (int v = 0; v < gridIds; v++)
+        {
+          if (deleted[v])
+              grid.remove (v);
+          for (int k = 0; k < degree[v]; k++)
+              maxEdge = Math.max (maxEdge,
+                                  locations.distanceHypot (v, neighbours[v][k]));
+        }
+    }
+
+  //  Rebuild once the recent list costs more to search than the grid does.
+
+  private void checkGrid ()
+    {
+      if (numRecent > 16 + Math.sqrt (numIds ()))
+          buildGrid ();
+    }
+
+  private boolean isInGrid (int v)
+    { return v < gridIds && ! grid.isRemoved (v); }
+
+  private void addRecent (int v)
+    {
+      if (numRecent == recent.length)
+          recent = Arrays.copyOf (recent, 2 * numRecent);
+      recent[numRecent++] = v;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private int add (float x, float y)
+    {
+      int p = locations.add (x, y);
+      if (p == deleted.length)
+        {
+          int capacity = 2 * p;
+          deleted = Arrays.copyOf (deleted, capacity);
+          neighbours = Arrays.copyOf (neighbours, capacity);
+          degree = Arrays.copyOf (degree, capacity);
+          parent = Arrays.copyOf (parent, capacity);
+          label = Arrays.copyOf (label, capacity);
+          stamp = Arrays.copyOf (stamp, capacity);
+          queue = Arrays.copyOf (queue, capacity);
+        }
+      neighbours[p] = new int [2];
+      return p;
+    }
+
+  private void newStamp ()
+    {
+      if (++currentStamp == 0)
+        {
+          Arrays.fill (stamp, 0);
+          currentStamp = 1;
+        }
+    }
+
+  private void addEdge (int a, int b)
+    {
+      addNeighbour (a, b);
+      addNeighbour (b, a);
+      weight += locations.distanceHypot (a, b);
+      maxEdge = Math.max (maxEdge, locations.distanceHypot (a, b));
+    }
+
+  private void addNeighbour (int a, int b)
+    {
+      if (degree[a] == neighbours[a].length)
+          neighbours[a] = Arrays.copyOf (neighbours[a], 2 * degree[a]);
+      neighbours[a][degree[a]++] = b;
+    }
+
+  private void removeEdge (int a, int b)
+    {
+      removeNeighbour (a, b);
+      removeNeighbour (b, a);
+      weight -= locations.distanceHypot (a, b);
+    }
+
+  private void removeNeighbour (int a, int b)
+    {
+      for (int k = 0; k < degree[a]; k++)
+          if (neighbours[a][k] == b)
+            {
+              neighbours[a][k] = neighbours[a][--degree[a]];
+              return;
+            }
+      assert false : "No edge " + a + " " + b;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The coordinates of every identifier, in arrays that grow as needed.
+
+  private static class Locations extends CoordArray
+    {
+      private float x [] = new float [16], y [] = new float [16];
+      private int n = 0;
+
+      int add (float xNew, float yNew)
+        {
+          if (n == x.length)
+            {
+              x = Arrays.copyOf (x, 2 * n);
+              y = Arrays.copyOf (y, 2 * n);
+            }
+          x[n] = xNew;
+          y[n] = yNew;
+          return n++;
+        }
+
+      void set (int i, float xNew, float yNew)
+        {
+          x[i] = xNew;
+          y[i] = yNew;
+        }
+
+      @Override
+      public int length ()
+        { return n; }
+
+      @Override
+      public float x (int i)
+        { return x[i]; }
+
+      @Override
+      public float y (int i)
+        { return y[i]; }
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ *  Derive the minimum spanning tree (MST) of a complete graph using Prim's
+ *  algorithm, with the work of each step split across threads.
+ *
+ *  Each step of Prim's algorithm inserts a vertex into the tree, then updates
+ *  the distance of every other vertex to the tree and finds the nearest one.
+ *  Here the vertices are divided into contiguous blocks, one per thread. Each
+ *  thread updates its own block and finds its nearest vertex. The threads
+ *  then meet at a barrier, where the nearest vertex overall is chosen to be
+ *  inserted next.
+ *
+ *  Ties are broken exactly as in MinSpanTreePrims (the lowest numbered vertex
+ *  wins), so the edges are identical. The weights must be safe to read from
+ *  many threads at once.
+ *
+ *  Small graphs are passed to MinSpanTreePrims, as the threads would only
+ *  slow them down.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.Arrays;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class MinSpanTreeParallel extends MinSpanTree
+{
+   private int numThreads = Runtime.getRuntime ().availableProcessors ();
+   private int minParallel = 2000;
+   private final MinSpanTreePrims prims = new MinSpanTreePrims ();
+
+   /////////////////////////////////////////////////////////////////////////////
+
+   void setNumThreads (int numThreads)
+     {
+       assert numThreads >= 1;
+       this.numThreads = numThreads;
+     }
+
+   //  Graphs with fewer vertices than this are solved on a single thread.
+
+   void setMinParallel (int minParallel)
+     { this.minParallel = minParallel; }
+
+   /////////////////////////////////////////////////////////////////////////////
+
+   @Override
+   public int [] edges (int n, Weights weights)
+     {
+       assert n >= 0;
+       int m = n - 1;
+       int threads = Math.min (numThreads, Math.max (1, m / 256));
+       if (n < minParallel || threads <= 1)
+           return prims.edges (n, weights);
+
+       return new Search (n, weights, threads).run ();
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  The state of one MST search.
+
+   private static class Search
+     {
+       final int m;
+       final Weights weights;
+       final boolean useRows;
+       final int offset;
+
+       //  inMST               Is this vertex currently in the MST?
+       //  nearestVertexInMST  Which MST vertex is nearest this vertex?
+       //  nearestWeight       What is the weight between this vertex
+       //                      and the nearest MST vertex?
+
+       final boolean inMST [];
+       final int nearestVertexInMST [];
+       final float nearestWeight [];
+
+       //  Each thread's block of vertices, and its nearest vertex and weight.
+
+       final int blockStart [];
+       final int blockNearest [];
+       final float blockWeight [];
+
+       final CyclicBarrier barrier;
+       volatile int insertVertex;
+       volatile Throwable failure = null;
+
+       Search (int n, Weights weights, int numThreads)
+         {
+           m = n - 1;
+           this.weights = weights;
+           useRows = weights.isSymmetric () && weights.row (n-1) != null;
+           offset = weights.rowOffset ();
+
+           inMST = new boolean [m];
+           nearestVertexInMST = new int [m];
+           nearestWeight = new float [m];
+           Arrays.fill (nearestWeight, Float.MAX_VALUE);
+
+           blockStart = new int [numThreads + 1];
+           for (int t = 0; t <= numThreads; t++)
+               blockStart[t] = (int) ((long) m * t / numThreads);
+           blockNearest = new int [numThreads];
+           blockWeight = new float [numThreads];
+
+           barrier = new CyclicBarrier (numThreads, this::chooseNext);
+           insertVertex = n - 1;
+         }
+
+       //  Run the search on the calling thread plus numThreads-1 others.
+
+       int [] run ()
+         {
+           int numThreads = blockNearest.length;
+           Thread threads [] = new Thread [numThreads - 1];
+           for (int t = 1; t < numThreads; t++)
+             {
+               final int block = t;
+               threads[t-1] = new Thread (() -> work (block));
+               threads[t-1].setDaemon (true);
+               threads[t-1].start ();
+             }
+           work (0);
+           try
+             {
+               for (Thread thread : threads)
+                   thread.join ();
+             }
+           catch (InterruptedException e)
+             {
+               Thread.currentThread ().interrupt ();
+               throw new IllegalStateException ("Interrupted during MST", e);
+             }
+           if (failure != null)
+               throw new IllegalStateException ("MST failed", failure);
+           return nearestVertexInMST;
+         }
+
+       //  The work of one thread: update its block at every step. A thread
+       //  that fails keeps meeting the others at the barrier, so that they
+       //  all stop together.
+
+       void work (int block)
+         {
+           for (int i = 0; i < m; i++)
+             {
+               try
+                 { update (block, insertVertex); }
+               catch (RuntimeException | Error e)
+                 { fail (e); }
+               try
+                 { barrier.await (); }
+               catch (BrokenBarrierException | InterruptedException e)
+                 {
+                   fail (e);
+                   return;
+                 }
+               if (failure != null)
+                   return;
+             }
+         }
+
+       synchronized void fail (Throwable e)
+         {
+           if (failure == null)
+               failure = e;
+         }
+
+       void update (int block, int insertVertex)
+         {
+           int start = blockStart[block], end = blockStart[block+1];
+           float row [] = useRows ? weights.row (insertVertex) : null;
+           int nearest = -1;
+           float minWeight = Float.MAX_VALUE;
+           for (int j = start; j < end; j++)
+               if (! inMST[j])
+                 {
+                   float thisWeight = useRows ? row[j + offset]
+                                              : weights.value (j, insertVertex);
+                   if (nearestWeight[j] > thisWeight)
+                     {
+                       nearestVertexInMST[j] = insertVertex;
+                       nearestWeight[j] = thisWeight;
+                     }
+                   if (nearestWeight[j] < minWeight)
+                     {
+                       nearest = j;
+                       minWeight = nearestWeight[j];
+                     }
+                 }
+           blockNearest[block] = nearest;
+           blockWeight[block] = minWeight;
+         }
+
+       //  Called by the barrier once every block is updated. Blocks are in
+       //  vertex order, so taking only strictly smaller weights keeps the
+       //  lowest numbered vertex on ties.
+
+       void chooseNext ()
+         {
+           int nearest = -1;
+           float minWeight = Float.MAX_VALUE;
+           for (int t = 0; t < blockNearest.length; t++)
+               if (blockNearest[t] >= 0 &&
+                   (nearest < 0 || blockWeight[t] < minWeight))
+                 {
+                   nearest = blockNearest[t];
+                   minWeight = blockWeight[t];
+                 }
+           if (nearest >= 0)
+             {
+               inMST[nearest] = true;
+               insertVertex = nearest;
+             }
+         }
+     }
+}
@@ -12,6 +12,13 @@
  *  one edge weight is greater than another. Thus for Euclidean graphs we can
  *  use distances squared and avoid the time-consuming sqrt.
  *
+ *  The inner loop runs over a contiguous row of weights: either a row of a
+ *  weights matrix (see Weights.row), or weights copied or calculated into
+ *  a row beforehand. The loop has no branches: vertices already in the tree
+ *  are given infinite weight rather than skipped, and the nearest vertex
+ *  is tracked with selects. This measured faster than the branching loop,
+ *  and than a separate pass to find the nearest vertex.
+ *
  *      Prim, R. C.. 1957, "Shortest connection networks And some
  *      generalizations", Bell System Technical Journal, 36 (6),
  *      1389–1401.
@@ -21,7 +28,6 @@
  */
 
 package CrossSpreadOrder;
-import static java.lang.Math.min;
 
 import java.util.Arrays;
 
@@ -37,50 +43,7 @@ public class MinSpanTreePrims extends MinSpanTree
            return new int [0];
        else if (n == 2)
            return new int [] { 1 };
-
-
-       //  inMST               Is this vertex currently in the MST?
-       //  nearestVertex       Which MST vertex is nearest this vertex?
-       //  nearestWeight       What is the weight between this vertex
-       //                      and the nearest MST vertex?
-
-       boolean inMST [] = new boolean [n-1];
-       int nearestVertexInMST [] = new int [n-1];
-       float nearestWeight [] = new float [n-1];
-       Arrays.fill (nearestWeight, Float.MAX_VALUE);
-
-       //  Insert the n-1'st vertex first.
-
-       int nearestVertexToMST = n - 1;
-
-       //  Insert the rest of the vertices in the MST.
-       //  Each iteration, the uninserted vertex nearest the tree is inserted.
-
-       for (int i = 0; i < n-1; i++)
-         {
-           int insertVertex = nearestVertexToMST;
-           nearestVertexToMST = -1;
-           float minWeight = Float.MAX_VALUE;
-           for (int j = 0; j < n-1; j++)
-               if (! inMST[j])
-                  {
-                    float thisWeight = weights.value (j, insertVertex);
-                    if (nearestWeight[j] > thisWeight)
-                      {
-                        nearestVertexInMST[j] = insertVertex;
-                        nearestWeight[j] = thisWeight;
-                      }
-                    if (nearestWeight[j] < minWeight)
-                      {
-                        nearestVertexToMST = j;
-                        minWeight = nearestWeight[j];
-                      }
-                  }
-           assert nearestVertexToMST >= 0;
-           inMST[nearestVertexToMST] = true;
-         }
-
-       return nearestVertexInMST;
+       return grow (n, weights).nearestVertexInMST;
      }
 
    /////////////////////////////////////////////////////////////////////////////
@@ -96,44 +59,127 @@ public class MinSpanTreePrims extends MinSpanTree
            return 0;
        else if (n == 2)
            return weights.value (0, 1);
+       return grow (n, weights).totalWeight;
+     }
 
-       //  inMST               Is this vertex currently in the MST?
-       //  nearestWeight       What is the weight between this vertex
-       //                      and the nearest MST vertex?
+   /////////////////////////////////////////////////////////////////////////////
+   //  Run Prim's algorithm, reading each inserted vertex's row of the weights
+   //  matrix if the weights are symmetric and have rows, and otherwise
+   //  copying the weights from the uninserted vertices into a row.
 
-       boolean inMST [] = new boolean [n-1];
-       float nearestWeight [] = new float [n-1];
-       Arrays.fill (nearestWeight, Float.MAX_VALUE);
+   private static Tree grow (int n, Weights weights)
+     {
+       Tree tree = new Tree (n);
+       int insertVertex = n - 1;
+       if (weights.isSymmetric () && weights.row (n-1) != null)
+         {
+           int offset = weights.rowOffset ();
+           for (int i = 0; i < n-1; i++)
+               insertVertex = tree.insert (insertVertex,
+                                           weights.row (insertVertex), offset);
+           return tree;
+         }
 
-       //  Insert the n-1'st vertex first.
+       float row [] = new float [n-1];
+       for (int i = 0; i < n-1; i++)
+         {
+           for (int j = 0; j < n-1; j++)
+               if (! tree.inMST[j])
+                   row[j] = weights.value (j, insertVertex);
+           insertVertex = tree.insert (insertVertex, row, 0);
+         }
+       return tree;
+     }
 
-       int nearestVertexToMST = n - 1;
+   /////////////////////////////////////////////////////////////////////////////
+   //  The MST of coordinates using the same distances as WeightsEuclid, but
+   //  calculated as needed rather than stored in a matrix. This takes O(n)
+   //  memory.
 
-       //  Insert the rest of the vertices in the MST.
-       //  Each iteration, the uninserted vertex nearest the tree is inserted.
+   @Override
+   public int [] edges (CoordArray coords)
+     {
+       int n = coords.length ();
+       if (n <= 1)
+           return new int [0];
+       else if (n == 2)
+           return new int [] { 1 };
 
-       float totalWeight = 0;
+       Tree tree = new Tree (n);
+       float row [] = new float [n-1];
+       int insertVertex = n - 1;
        for (int i = 0; i < n-1; i++)
          {
-           int insertVertex = nearestVertexToMST;
-           nearestVertexToMST = -1;
-           float minWeight = Float.MAX_VALUE;
            for (int j = 0; j < n-1; j++)
-               if (! inMST[j])
-                  {
-                    nearestWeight[j] = min (nearestWeight[j],
-                                            weights.value (j, insertVertex));
-                    if (nearestWeight[j] < minWeight)
-                      {
-                        nearestVertexToMST = j;
-                        minWeight = nearestWeight[j];
-                      }
-                  }
-           assert nearestVertexToMST >= 0;
+               if (! tree.inMST[j])
+                   row[j] = coords.distanceHypot (j, insertVertex);
+           insertVertex = tree.insert (insertVertex, row, 0);
+         }
+       return tree.nearestVertexInMST;
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  The state of Prim's algorithm over vertices 0 to n-2, with vertex n-1
+   //  inserted first.
+   //
+   //  inMST               Is this vertex currently in the MST?
+   //  excluded            0, or +infinity once the vertex is in the MST.
+   //  nearestVertexInMST  Which MST vertex is nearest this vertex?
+   //  nearestWeight       What is the weight between this vertex and the
+   //                      nearest MST vertex? +infinity once in the MST.
+
+   private static class Tree
+     {
+       final boolean inMST [];
+       final float excluded [];
+       final int nearestVertexInMST [];
+       final float nearestWeight [];
+       float totalWeight = 0;
+
+       Tree (int n)
+         {
+           inMST = new boolean [n-1];
+           excluded = new float [n-1];
+           nearestVertexInMST = new int [n-1];
+           nearestWeight = new float [n-1];
+           Arrays.fill (nearestWeight, Float.MAX_VALUE);
+         }
+
+       //  Insert a vertex given its weights to the other vertices, where the
+       //  weight to vertex j is row[j + offset]. Returns the next vertex to
+       //  insert: the uninserted vertex nearest the tree, the lowest numbered
+       //  if tied. Entries of the row for vertices in the MST are ignored.
+
+       int insert (int insertVertex, float row [], int offset)
+         {
+           int m = nearestWeight.length;
+           int nearestVertexToMST = 0;
+           float minWeight = Float.POSITIVE_INFINITY;
+
+           //  Every vertex is visited without branching, using selects
+           //  instead. A vertex in the MST has weight +infinity both ways, so
+           //  it is never updated nor chosen.
+
+           for (int j = 0; j < m; j++)
+             {
+               float thisWeight = row[j + offset] + excluded[j];
+               float oldWeight = nearestWeight[j];
+               boolean isNearer = thisWeight < oldWeight;
+               nearestVertexInMST[j] = isNearer ? insertVertex
+                                                : nearestVertexInMST[j];
+               float newWeight = isNearer ? thisWeight : oldWeight;
+               nearestWeight[j] = newWeight;
+               boolean isNearest = newWeight < minWeight;
+               nearestVertexToMST = isNearest ? j : nearestVertexToMST;
+               minWeight = isNearest ? newWeight : minWeight;
+             }
+           assert minWeight < Float.POSITIVE_INFINITY;
+
            inMST[nearestVertexToMST] = true;
+           excluded[nearestVertexToMST] = Float.POSITIVE_INFINITY;
+           nearestWeight[nearestVertexToMST] = Float.POSITIVE_INFINITY;
            totalWeight += minWeight;
+           return nearestVertexToMST;
          }
-
-       return totalWeight;
      }
 }
@@ -0,0 +1,172 @@
+/*
+ *  Derive the minimum spanning tree (MST) of a set of coordinates using
+ *  Prim's algorithm and a spatial grid, without examining every pair.
+ *
+ *  Each vertex in the tree remembers its nearest vertex not yet in the tree,
+ *  as found by SpatialGrid. These are kept in a heap, and each step the
+ *  smallest is added to the tree. When a vertex's remembered neighbour has
+ *  since joined the tree, its nearest vertex is looked up again.
+ *
+ *  This gives exactly the same edges as MinSpanTreePrims, ties included,
+ *  but for reasonably even point densities takes about O(n log n) time
+ *  rather than O(n**2).
+ *
+ *  Given only weights rather than coordinates, MinSpanTreePrims is used.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class MinSpanTreeSpatial extends MinSpanTree
+{
+   private final MinSpanTreePrims prims = new MinSpanTreePrims ();
+
+   /////////////////////////////////////////////////////////////////////////////
+
+   @Override
+   public int [] edges (int n, Weights weights)
+     { return prims.edges (n, weights); }
+
+   /////////////////////////////////////////////////////////////////////////////
+
+   @Override
+   public int [] edges (CoordArray coords)
+     {
+       int n = coords.length ();
+       if (n <= 1)
+           return new int [0];
+       else if (n == 2)
+           return new int [] { 1 };
+
+       SpatialGrid grid = new SpatialGrid (coords);
+       Heap heap = new Heap (n);
+       int nearestVertexInMST [] = new int [n-1];
+
+       //  Insert the n-1'st vertex first, as MinSpanTreePrims does.
+
+       int insertVertex = n - 1;
+       for (int rank = 0; ; rank++)
+         {
+           grid.remove (insertVertex);
+           if (rank == n-1)
+               break;
+           int target = grid.nearest (insertVertex);
+           heap.push (insertVertex, target,
+                      coords.distanceHypot (insertVertex, target), rank);
+
+           //  Find the tree vertex whose nearest outside vertex is nearest,
+           //  updating those whose remembered neighbour is now in the tree.
+
+           int source = heap.top ();
+           while (grid.isRemoved (heap.target[source]))
+             {
+               target = grid.nearest (source);
+               heap.update (source, target,
+                            coords.distanceHypot (source, target));
+               source = heap.top ();
+             }
+
+           insertVertex = heap.target[source];
+           nearestVertexInMST[insertVertex] = source;
+         }
+
+       return nearestVertexInMST;
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  A heap of tree vertices ordered by the distance to their nearest vertex
+   //  outside the tree, then by that vertex's number (the lowest wins, as in
+   //  MinSpanTreePrims), then by the order they joined the tree (the earliest
+   //  wins).
+
+   private static class Heap
+     {
+       final int heap [], target [], rank [];
+       final float distance [];
+       int size = 0;
+
+       Heap (int n)
+         {
+           heap = new int [n];
+           target = new int [n];
+           rank = new int [n];
+           distance = new float [n];
+         }
+
+       int top ()
+         { return heap[0]; }
+
+       void push (int vertex, int target, float distance, int rank)
+         {
+           this.target[vertex] = target;
+           this.distance[vertex] = distance;
+           this.rank[vertex] = rank;
+           heap[size] = vertex;
+           siftUp (size++);
+         }
+
+       //  Change the top vertex's neighbour to one further away, or remove
+       //  it if it has none.
+
+       void update (int vertex, int target, float distance)
+         {
+           assert heap[0] == vertex;
+           if (target < 0)
+             {
+               heap[0] = heap[--size];
+               assert size > 0;
+             }
+           else
+             {
+               this.target[vertex] = target;
+               this.distance[vertex] = distance;
+             }
+           siftDown (0);
+         }
+
+       private boolean less (int a, int b)
+         {
+           if (distance[a] != distance[b])
+               return distance[a] < distance[b];
+           if (target[a] != target[b])
+               return target[a] < target[b];
+           return rank[a] < rank[b];
+         }
+
+       private void siftUp (int k)
+         {
+           int vertex = heap[k];
+           while (k > 0)
+             {
+               int parent = (k - 1) / 2;
+               if (! less (vertex, heap[parent]))
+                   break;
+               heap[k] = heap[parent];
+               k = parent;
+             }
+           heap[k] = vertex;
+         }
+
+       private void siftDown (int k)
+         {
+           int vertex = heap[k];
+           while (true)
+             {
+               int child = 2 * k + 1;
+               if (child >= size)
+                   break;
+               if (child + 1 < size && less (heap[child+1], heap[child]))
+                   child++;
+               if (! less (heap[child], vertex))
+                   break;
+               heap[k] = heap[child];
+               k = child;
+             }
+           heap[k] = vertex;
+         }
+     }
+}
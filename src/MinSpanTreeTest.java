@@ -13,6 +13,7 @@ import static CrossSpreadOrder.GraphUtil.isSpanningTree;
 import static CrossSpreadOrder.Print.printf;
 import static CrossSpreadOrder.SystemCall.className;
 import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
@@ -169,6 +170,261 @@ public class MinSpanTreeTest
       assert areEdgesASpanningTree (edges);
     }
 
+  /////////////////////////////////////////////////////////////////////////////
+  //  The row kernels (matrix rows and on-the-fly distances) must give the
+  //  same MST as calling Weights.value.
+
+  @Test
+  public void rows ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+      Random rand = new Random (3601);
+      MinSpanTreePrims mst = new MinSpanTreePrims ();
+
+      for (int test = 0; test < 2000; test++)
+        {
+          int n = rand.nextInt (150);
+          CoordArrayFloat coords = new CoordArrayFloat (n);
+          for (int j = 0; j < n; j++)
+              coords.set (j, 100 * rand.nextFloat (), 100 * rand.nextFloat ());
+          Weights matrix = new WeightsEuclid (coords);
+          Weights lazy = new WeightsEuclidLazy (coords);
+
+          int edges [] = mst.edges (n, lazy);
+          assertArrayEquals (edges, mst.edges (n, matrix));
+          assertArrayEquals (edges, mst.edges (coords));
+          assertTrue (mst.weight (n, lazy) == mst.weight (n, matrix));
+          if (n >= 2)
+            {
+              Weights shift1 = new WeightsShift (lazy, 1),
+                      shift2 = new WeightsShift (matrix, 1);
+              assertArrayEquals (mst.edges (n-1, shift1),
+                                 mst.edges (n-1, shift2));
+              assertTrue (mst.weight (n-1, shift1) ==
+                          mst.weight (n-1, shift2));
+            }
+        }
+
+      //  Timing
+
+      int n = 5000;
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int j = 0; j < n; j++)
+          coords.set (j, 100 * rand.nextFloat (), 100 * rand.nextFloat ());
+      Weights matrix = new WeightsEuclid (coords);
+      Weights lazy = new WeightsEuclidLazy (coords);
+      Weights value = new Weights ()
+        {
+          @Override
+          public float value (int i, int j)
+            { return matrix.value (i, j); }
+        };
+      for (int pass = 0; pass < 3; pass++)
+        {
+          Timer timer = new Timer ();
+          mst.edges (n, value);
+          double time1 = timer.elapsed ();
+          timer.restart ();
+          mst.edges (n, matrix);
+          double time2 = timer.elapsed ();
+          timer.restart ();
+          mst.edges (coords);
+          double time3 = timer.elapsed ();
+          timer.restart ();
+          mst.edges (n, lazy);
+          double time4 = timer.elapsed ();
+          printf ("   n = %d: value %.3f s, rows %.3f s, " +
+                  "coords %.3f s, lazy %.3f s%n", n, time1, time2, time3, time4);
+        }
+      printf ("%n");
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  MinSpanTreeParallel must give exactly the same edges as
+  //  MinSpanTreePrims, whatever the number of threads.
+
+  @Test
+  public void parallel ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+      Random rand = new Random (3701);
+      MinSpanTree prims = new MinSpanTreePrims ();
+      MinSpanTreeParallel parallel = new MinSpanTreeParallel ();
+      parallel.setMinParallel (0);
+
+      for (int test = 0; test < 200; test++)
+        {
+          int n = rand.nextInt (3000);
+          CoordArrayFloat coords = new CoordArrayFloat (n);
+          for (int j = 0; j < n; j++)
+              coords.set (j, rand.nextInt (50), rand.nextInt (50));  // Ties
+          Weights weights = test % 2 == 0 ? new WeightsEuclid (coords)
+                                          : new WeightsEuclidLazy (coords);
+          parallel.setNumThreads (1 + rand.nextInt (8));
+          assertArrayEquals (prims.edges (n, weights),
+                             parallel.edges (n, weights));
+        }
+
+      //  Timing
+
+      int n = 8000;
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int j = 0; j < n; j++)
+          coords.set (j, 100 * rand.nextFloat (), 100 * rand.nextFloat ());
+      Weights weights = new WeightsEuclidLazy (coords);
+      parallel.setNumThreads (Runtime.getRuntime ().availableProcessors ());
+      Timer timer = new Timer ();
+      prims.edges (n, weights);
+      double time1 = timer.elapsed ();
+      timer.restart ();
+      parallel.edges (n, weights);
+      double time2 = timer.elapsed ();
+      printf ("   n = %d, %d threads: Prims %.3f s, parallel %.3f s%n%n",
+              n, Runtime.getRuntime ().availableProcessors (), time1, time2);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  MinSpanTreeSpatial must give exactly the same edges as
+  //  MinSpanTreePrims, ties included.
+
+  @Test
+  public void spatial ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+      Random rand = new Random (3802);
+      MinSpanTree prims = new MinSpanTreePrims ();
+      MinSpanTree spatial = new MinSpanTreeSpatial ();
+
+      for (int test = 0; test < 300; test++)
+        {
+          int n = rand.nextInt (1000);
+          CoordArray coords = SpatialGridTest.randomCoords (rand, n, test % 3);
+          assertArrayEquals (prims.edges (coords), spatial.edges (coords));
+        }
+
+      //  Timing
+
+      for (int n = 2000; n <= 8000; n *= 4)
+        {
+          CoordArray coords = SpatialGridTest.randomCoords (rand, n, 0);
+          Timer timer = new Timer ();
+          int edges1 [] = prims.edges (coords);
+          double time1 = timer.elapsed ();
+          timer.restart ();
+          int edges2 [] = spatial.edges (coords);
+          double time2 = timer.elapsed ();
+          assertArrayEquals (edges1, edges2);
+          printf ("   n = %5d: Prims %.3f s, spatial %.3f s%n",
+                  n, time1, time2);
+        }
+
+      //  A long thin line puts every cell in one row, which must not make
+      //  the searches quadratic in the ring number.
+
+      double times [] = new double [2];
+      for (int k = 0; k < 2; k++)
+        {
+          int n = 10000 << (2 * k);
+          CoordArrayFloat coords = new CoordArrayFloat (n);
+          for (int i = 0; i < n; i++)
+              coords.set (i, i + 5 * rand.nextFloat (), 0.3F * rand.nextFloat ());
+          spatial.edges (coords);
+          Timer timer = new Timer ();
+          spatial.edges (coords);
+          times[k] = timer.cpu ();
+          printf ("   n = %5d line: spatial %.3f s%n", n, times[k]);
+        }
+      assertTrue (times[1] < 8 * times[0] + 1);
+      printf ("%n");
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  MinSpanTreeDynamic must match MinSpanTreePrims after every insertion,
+  //  deletion and move. The locations are distinct, so the MST is unique.
+
+  @Test
+  public void dynamic ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+      Random rand = new Random (4501);
+      MinSpanTree prims = new MinSpanTreePrims ();
+
+      for (int test = 0; test < 100; test++)
+        {
+          int n = rand.nextInt (60);
+          CoordArray start = SpatialGridTest.randomCoords (rand, n, test % 2);
+          MinSpanTreeDynamic mst = new MinSpanTreeDynamic (start);
+
+          for (int step = 0; step < 100; step++)
+            {
+              int op = rand.nextInt (3);
+              int v = mst.numIds () == 0 ? -1 : rand.nextInt (mst.numIds ());
+              if (v < 0 || op == 0 || mst.size () < 3)
+                  mst.insert (rand.nextFloat (), rand.nextFloat ());
+              else if (mst.isDeleted (v))
+                  continue;
+              else if (op == 1)
+                  mst.delete (v);
+              else
+                  mst.move (v, rand.nextFloat (), rand.nextFloat ());
+
+              CoordArray coords = mst.coords ();
+              int edges [] = mst.edges ();
+              assertTrue (areEdgesASpanningTree (edges));
+              assertArrayEquals (prims.edges (coords), edges);
+              Weights weights = new WeightsEuclid (coords);
+              assertEquals (edgesWeight (weights, edges), mst.weight (),
+                            1e-4F * mst.weight ());
+            }
+        }
+
+      //  Reused by branch elimination.
+
+      CoordArray coords = SpatialGridTest.randomCoords (rand, 300, 0);
+      MinSpanTreeDynamic mst = new MinSpanTreeDynamic (coords);
+      OrderBranchEliminate be = new OrderBranchEliminate ();
+      assertArrayEquals (be.path (coords), be.path (mst));
+
+      //  Timing: move some locations of a large line.
+
+      int n = 8000, numMoves = 100;
+      coords = SpatialGridTest.randomCoords (rand, n, 0);
+      mst = new MinSpanTreeDynamic (coords);
+      Timer timer = new Timer ();
+      for (int i = 0; i < numMoves; i++)
+          mst.move (rand.nextInt (n), rand.nextFloat (), rand.nextFloat ());
+      double time1 = timer.elapsed ();
+      timer.restart ();
+      int edges [] = prims.edges (mst.coords ());
+      double time2 = timer.elapsed ();
+      assertArrayEquals (edges, mst.edges ());
+      printf ("   n = %d: %d moves %.3f s, one Prims rebuild %.3f s%n",
+              n, numMoves, time1, time2);
+
+      //  Timing: delete middle locations of a long line, which splits it
+      //  into two halves. This must take linear time, not quadratic.
+
+      MinSpanTree spatial = new MinSpanTreeSpatial ();
+      int numDeletes = 50;
+      double times [] = new double [2];
+      for (int k = 0; k < 2; k++)
+        {
+          n = 10000 << (2 * k);
+          CoordArrayFloat line = new CoordArrayFloat (n);
+          for (int i = 0; i < n; i++)
+              line.set (i, i + 5 * rand.nextFloat (), 0.3F * rand.nextFloat ());
+          mst = new MinSpanTreeDynamic (line);
+          timer.restart ();
+          for (int i = 0; i < numDeletes; i++)
+              mst.delete (n/2 - numDeletes + 2 * i);
+          times[k] = timer.cpu ();
+          assertArrayEquals (spatial.edges (mst.coords ()), mst.edges ());
+          printf ("   n = %5d line: %d deletes %.3f s%n", n, numDeletes, times[k]);
+        }
+      assertTrue (times[1] < 8 * times[0] + 0.5);
+      printf ("%n");
+    }
+
   /////////////////////////////////////////////////////////////////////////////
 
   @Test
@@ -0,0 +1,266 @@
+/**
+ *  Order many lines at once, such as all of the shot lines and receiver
+ *  lines of a survey.
+ *
+ *  Every line is ordered independently with the same OrderLocns object, which
+ *  must therefore be safe to share between threads (see OrderLocns). The lines
+ *  are handed to a work-stealing pool largest first, as the largest lines take
+ *  the longest and starting them last would leave the other threads idle at
+ *  the end.
+ *
+ *  Ordering a line of n locations typically needs an n x n weights matrix,
+ *  so a few large lines running at once can exhaust memory. Lines are only
+ *  started when the estimated heap memory of all running lines (see
+ *  OrderLocns.memory) stays within a limit. A line that is larger than the
+ *  limit on its own is run by itself.
+ *
+ *  Each result is passed to a Sink as soon as it is ready. The Sink is called
+ *  from the worker threads for ordered lines and from the calling thread for
+ *  stored ones, possibly at the same time, so it must be thread-safe.
+ *
+ *  Given an OrderStore, each line's path is looked up by its fingerprint
+ *  (see LineFingerprint) before ordering it, and stored afterwards. Re-running
+ *  a revised survey then only orders the lines that changed.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderBatch
+{
+  private final OrderLocns order;
+  private ForkJoinPool pool = ForkJoinPool.commonPool ();
+  private long memoryLimit = Runtime.getRuntime ().maxMemory () / 2;
+  private OrderStore store = null;
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Receives the result of ordering line number "line".
+
+  public interface Sink
+    {
+      void accept (int line, OrderResult result);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public OrderBatch (OrderLocns order)
+    { this.order = order; }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  void setPool (ForkJoinPool pool)
+    { this.pool = pool; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The most memory, in bytes, that the running lines may use at once.
+
+  void setMemoryLimit (long memoryLimit)
+    {
+      assert memoryLimit > 0;
+      this.memoryLimit = memoryLimit;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Reuse and keep paths in this store. Null (the default) orders every
+  //  line.
+
+  void setStore (OrderStore store)
+    { this.store = store; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Order every line and return the results in the same order as the lines.
+
+  public OrderResult [] run (CoordArray lines [])
+    {
+      OrderResult results [] = new OrderResult [lines.length];
+      run (lines, (line, result) -> results[line] = result);
+      return results;
+    }
+
+  public OrderResult [] run (Coord lines [] [])
+    { return run (toCoordArrays (lines)); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Order every line, passing each result to the sink when it is ready.
+  //  This returns once every line has been ordered.
+
+  public void run (Coord lines [] [], Sink sink)
+    { run (toCoordArrays (lines), sink); }
+
+  public void run (CoordArray lines [], Sink sink)
+    {
+      int numLines = lines.length;
+      if (numLines == 0)
+          return;
+
+      //  Largest lines first.
+
+      int sizes [] = new int [numLines];
+      for (int i = 0; i < numLines; i++)
+          sizes[i] = -lines[i].length ();
+      int index [] = SortIndex.argsort (sizes);
+
+      //  Hand the lines to the pool as memory allows.
+
+      MemoryGate gate = new MemoryGate (memoryLimit);
+      CountDownLatch done = new CountDownLatch (numLines);
+      Throwable failure [] = new Throwable [1];
+      int numStarted = 0;
+      for (; numStarted < numLines; numStarted++)
+        {
+          final int line = index[numStarted];
+
+          //  Reuse a stored path. A store that fails stops the batch like
+          //  a line that fails, so the lines already started are still
+          //  waited for.
+
+          long key = 0;
+          int path [] = null;
+          if (store != null)
+            {
+              try
+                {
+                  key = LineFingerprint.of (lines[line], order);
+                  path = store.get (key);
+                }
+              catch (Throwable e)
+                {
+                  fail (failure, e);
+                  gate.cancel ();
+                  break;
+                }
+            }
+          if (path != null && path.length == lines[line].length ())
+            {
+              OrderResult result = new OrderResult (path);
+              result.stored = true;
+              try
+                { sink.accept (line, result); }
+              catch (Throwable e)
+                {
+                  fail (failure, e);
+                  gate.cancel ();
+                }
+              done.countDown ();
+              continue;
+            }
+
+          final long fingerprint = key;
+          final long memory = order.memory (lines[line].length ());
+          if (! gate.acquire (memory))
+              break;
+          pool.execute (() ->
+            {
+              try
+                {
+                  OrderResult result = order.solve (lines[line]);
+                  if (store != null)
+                      store.put (fingerprint, result.path ());
+                  sink.accept (line, result);
+                }
+              catch (Throwable e)
+                {
+                  fail (failure, e);
+                  gate.cancel ();
+                }
+              finally
+                {
+                  gate.release (memory);
+                  done.countDown ();
+                }
+            });
+        }
+
+      //  Wait for the lines that were started, then report any failure.
+
+      try
+        {
+          for (int i = numStarted; i < numLines; i++)
+              done.countDown ();
+          done.await ();
+        }
+      catch (InterruptedException e)
+        {
+          gate.cancel ();
+          Thread.currentThread ().interrupt ();
+          throw new IllegalStateException ("Interrupted while ordering", e);
+        }
+      if (failure[0] != null)
+          throw new IllegalStateException ("Line ordering failed", failure[0]);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Keep the first failure.
+
+  private static void fail (Throwable failure [], Throwable e)
+    {
+      synchronized (failure)
+        {
+          if (failure[0] == null)
+              failure[0] = e;
+        }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  private static CoordArray [] toCoordArrays (Coord lines [] [])
+    {
+      CoordArray coordArrays [] = new CoordArray [lines.length];
+      for (int line = 0; line < lines.length; line++)
+          coordArrays[line] = new CoordArrayFloat (lines[line]);
+      return coordArrays;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Admits lines while their total memory stays within the limit.
+
+  private static class MemoryGate
+    {
+      private final long limit;
+      private long inUse = 0;
+      private boolean cancelled = false;
+
+      MemoryGate (long limit)
+        { this.limit = limit; }
+
+      //  Wait until there is room for this much memory. Returns false if
+      //  the batch was cancelled (or the thread interrupted) instead.
+
+      synchronized boolean acquire (long memory)
+        {
+          while (! cancelled && inUse > 0 && inUse + memory > limit)
+            {
+              try
+                { wait (); }
+              catch (InterruptedException e)
+                {
+                  Thread.currentThread ().interrupt ();
+                  cancelled = true;
+                }
+            }
+          if (cancelled)
+              return false;
+          inUse += memory;
+          return true;
+        }
+
+      synchronized void release (long memory)
+        {
+          inUse -= memory;
+          notifyAll ();
+        }
+
+      synchronized void cancel ()
+        {
+          cancelled = true;
+          notifyAll ();
+        }
+    }
+}
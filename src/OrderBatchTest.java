@@ -0,0 +1,334 @@
+/**
+ *  Unit test for OrderBatch.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderBatchTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  The batch must give the same paths as ordering each line on its own.
+
+  @Test
+  public void compare ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (2901);
+      Coord lines [] [] = lines (rand, 100, 60);
+      OrderBranchEliminate order = new OrderBranchEliminate ();
+      ForkJoinPool pool = new ForkJoinPool (4);
+
+      OrderBatch batch = new OrderBatch (order);
+      batch.setPool (pool);
+      OrderResult results [] = batch.run (lines);
+      pool.shutdown ();
+
+      for (int line = 0; line < lines.length; line++)
+          assertArrayEquals (order.path (lines[line]), results[line].path ());
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The running lines must never exceed the memory limit, except for a line
+  //  too large to fit on its own.
+
+  @Test
+  public void memory ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (2902);
+      Coord lines [] [] = lines (rand, 60, 80);
+      long limit = 4L * 50 * 50;
+      AtomicLong inUse = new AtomicLong (), maxInUse = new AtomicLong ();
+      AtomicInteger count = new AtomicInteger ();
+
+      OrderLocns order = new OrderLocns ()
+        {
+          OrderBranchEliminate be = new OrderBranchEliminate ();
+
+          @Override
+          public int [] path (CoordArray coords)
+            {
+              long memory = 4L * coords.length () * coords.length ();
+              long total = inUse.addAndGet (memory);
+              maxInUse.accumulateAndGet (total, Math::max);
+              assertTrue (total <= limit || total == memory);
+              try
+                { return be.path (coords); }
+              finally
+                { inUse.addAndGet (-memory); }
+            }
+        };
+
+      ForkJoinPool pool = new ForkJoinPool (4);
+      OrderBatch batch = new OrderBatch (order);
+      batch.setPool (pool);
+      batch.setMemoryLimit (limit);
+      batch.run (lines, (line, result) -> count.incrementAndGet ());
+      pool.shutdown ();
+
+      printf ("   Limit %d bytes, most in use %d bytes%n%n",
+              limit, maxInUse.get ());
+      assertEquals (lines.length, count.get ());
+      assertEquals (0, inUse.get ());
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The memory estimate must follow how the weights are stored. Direct
+  //  weights are outside the heap, so more lines can run at once.
+
+  @Test
+  public void storageMemory ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      OrderSegmentSHP segment = new OrderSegmentSHP ();
+      int n = 1000;
+      long matrix = segment.memory (n);
+      segment.setStorage (OrderLocns.Storage.Packed);
+      long packed = segment.memory (n);
+      segment.setStorage (OrderLocns.Storage.Direct);
+      long direct = segment.memory (n);
+      printf ("   n = %d: matrix %d, packed %d, direct %d bytes%n",
+              n, matrix, packed, direct);
+      assertTrue (matrix >= 4L * n * n);
+      assertEquals (matrix / 2, packed, 0.01 * matrix);
+      assertTrue (direct < 100L * n);
+      OrderBranchEliminate be = new OrderBranchEliminate ();
+      be.setNumCandidates (8);
+      assertTrue (be.memory (n) < 100L * n);
+      OrderRenumbered renumbered = new OrderRenumbered (new OrderSegmentSHP ());
+      assertEquals (matrix, renumbered.memory (n), 0.05 * matrix);
+
+      Random rand = new Random (2903);
+      Coord lines [] [] = new Coord [24] [];
+      for (int line = 0; line < lines.length; line++)
+          lines[line] = randomLine (rand, 70);
+      long limit = 4L * 4 * 50 * 50;
+      for (OrderLocns.Storage storage : OrderLocns.Storage.values ())
+        {
+          AtomicInteger running = new AtomicInteger (),
+                        maxRunning = new AtomicInteger ();
+          OrderLocns order = new OrderLocns ()
+            {
+              @Override
+              public int [] path (CoordArray coords)
+                {
+                  maxRunning.accumulateAndGet (running.incrementAndGet (),
+                                               Math::max);
+                  try
+                    { Thread.sleep (20); }
+                  catch (InterruptedException e)
+                    { Thread.currentThread ().interrupt (); }
+                  running.decrementAndGet ();
+                  return new OrderProjectOntoLine ().path (coords);
+                }
+            };
+          order.setStorage (storage);
+          ForkJoinPool pool = new ForkJoinPool (4);
+          OrderBatch batch = new OrderBatch (order);
+          batch.setPool (pool);
+          batch.setMemoryLimit (limit);
+          batch.run (lines);
+          pool.shutdown ();
+          printf ("   %-6s at most %d lines at once%n",
+                  storage, maxRunning.get ());
+          if (storage == OrderLocns.Storage.Direct)
+              assertTrue (maxRunning.get () > 2);
+          else
+              assertTrue (maxRunning.get () <= 2);
+        }
+      printf ("%n");
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A failing line must be reported to the caller.
+
+  @Test
+  public void failure ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (2903);
+      Coord lines [] [] = lines (rand, 20, 30);
+      OrderLocns order = new OrderLocns ()
+        {
+          @Override
+          public int [] path (CoordArray coords)
+            {
+              if (coords.length () % 7 == 0)
+                  throw new ArithmeticException ("Bad line");
+              return new OrderProjectOntoLine ().path (coords);
+            }
+        };
+      lines[5] = randomLine (rand, 14);
+
+      boolean thrown = false;
+      try
+        { new OrderBatch (order).run (lines); }
+      catch (IllegalStateException e)
+        { thrown = e.getCause () instanceof ArithmeticException; }
+      assertTrue (thrown);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Fingerprints must change with the coordinates and the settings.
+
+  @Test
+  public void fingerprint ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4601);
+      CoordArrayFloat coords = new CoordArrayFloat (randomLine (rand, 50));
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      long fingerprint = LineFingerprint.of (coords, order);
+
+      assertEquals (fingerprint, LineFingerprint.of (
+          new CoordArrayFloat (coords.xArray ().clone (),
+                               coords.yArray ().clone ()), order));
+      order.setMaxBranching (10);
+      assertNotEquals (fingerprint, LineFingerprint.of (coords, order));
+      order.setMaxBranching (30);
+      assertEquals (fingerprint, LineFingerprint.of (coords, order));
+      order.setMedianMult (3);
+      assertNotEquals (fingerprint, LineFingerprint.of (coords, order));
+      order.setMedianMult (2);
+      assertNotEquals (fingerprint,
+                       LineFingerprint.of (coords, new OrderBranchEliminate ()));
+
+      coords.set (7, coords.x (7) + 1e-3F, coords.y (7));
+      assertNotEquals (fingerprint, LineFingerprint.of (coords, order));
+
+      CoordArrayFloat zero = new CoordArrayFloat (new float [] { 0F },
+                                                  new float [] { 1F });
+      CoordArrayFloat minusZero = new CoordArrayFloat (new float [] { -0F },
+                                                       new float [] { 1F });
+      assertEquals (LineFingerprint.of (zero, order),
+                    LineFingerprint.of (minusZero, order));
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A revised survey must only order the lines that changed.
+
+  @Test
+  public void store ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4602);
+      Coord lines [] [] = lines (rand, 100, 60);
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      OrderStoreMemory store = new OrderStoreMemory ();
+      OrderBatch batch = new OrderBatch (order);
+      batch.setStore (store);
+
+      OrderResult results [] = batch.run (lines);
+      for (OrderResult result : results)
+          assertTrue (! result.isStored ());
+      assertTrue (store.size () <= lines.length);
+
+      //  Revise a tenth of the lines.
+
+      boolean revised [] = new boolean [lines.length];
+      for (int line = 0; line < lines.length; line += 10)
+        {
+          lines[line] = randomLine (rand, lines[line].length);
+          revised[line] = true;
+        }
+      results = batch.run (lines);
+      int numStored = 0;
+      for (int line = 0; line < lines.length; line++)
+        {
+          assertArrayEquals (order.path (lines[line]), results[line].path ());
+          if (results[line].isStored ())
+              numStored++;
+          assertTrue (results[line].isStored () || revised[line] ||
+                      lines[line].length == 0);
+        }
+      printf ("   %d of %d lines reused%n%n", numStored, lines.length);
+      assertTrue (numStored >= lines.length - lines.length / 10 - 2);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A store that fails part way must fail the batch, and only once every
+  //  line already started has reached the sink.
+
+  @Test
+  public void storeFailure ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4603);
+      Coord lines [] [] = lines (rand, 40, 60);
+      OrderStoreMemory memory = new OrderStoreMemory ();
+      AtomicInteger numGets = new AtomicInteger ();
+      OrderStore store = new OrderStore ()
+        {
+          @Override
+          public int [] get (long fingerprint)
+            {
+              if (numGets.incrementAndGet () == 10)
+                  throw new UncheckedIOException (new IOException ("Bad disk"));
+              return memory.get (fingerprint);
+            }
+
+          @Override
+          public void put (long fingerprint, int path [])
+            { memory.put (fingerprint, path); }
+        };
+      OrderBatch batch = new OrderBatch (new OrderSegmentSHP ());
+      batch.setStore (store);
+      batch.setPool (new ForkJoinPool (2));
+
+      AtomicInteger numResults = new AtomicInteger ();
+      boolean thrown = false;
+      try
+        { batch.run (lines, (line, result) -> numResults.incrementAndGet ()); }
+      catch (IllegalStateException e)
+        { thrown = e.getCause () instanceof UncheckedIOException; }
+      assertTrue (thrown);
+      assertEquals (9, numResults.get ());
+      assertEquals (numResults.get (), memory.size ());
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static Coord [] [] lines (Random rand, int numLines, int maxSize)
+    {
+      Coord lines [] [] = new Coord [numLines] [];
+      for (int line = 0; line < numLines; line++)
+          lines[line] = randomLine (rand, 1 + rand.nextInt (maxSize));
+      return lines;
+    }
+
+  private static Coord [] randomLine (Random rand, int n)
+    {
+      Coord coords [] = new Coord [n];
+      for (int i = 0; i < n; i++)
+          coords[i] = new Coord (10 * rand.nextFloat (), rand.nextFloat ());
+      return coords;
+    }
+}
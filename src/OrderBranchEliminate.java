@@ -14,6 +14,11 @@
  *      Fränti, P., T. Nenonen, and N. Yuan, 2021, Converting MST to TSP Path
  *      by Branch Elimination; Appl. Sci., 11.
  *
+ *  For large lines, setNumCandidates restricts the leaf pairs considered to
+ *  near neighbours (see ShortHamPathBE). The weights are then calculated as
+ *  needed rather than stored, and the MST is found with a spatial grid, so
+ *  memory is O(n).
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
@@ -24,11 +29,82 @@ package CrossSpreadOrder;
 
 public class OrderBranchEliminate extends OrderLocns
   {
+    private int numCandidates = 0;
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Only join leaves that are among each other's k nearest neighbours.
+    //  Zero (the default) compares all leaf pairs.
+
+    void setNumCandidates (int numCandidates)
+      {
+        assert numCandidates >= 0;
+        this.numCandidates = numCandidates;
+      }
+
     @Override
-    public int [] path (Coord coords [])
+    public String signature ()
+      { return super.signature () + " numCandidates=" + numCandidates; }
+
+    //  With candidates, the weights are calculated as needed.
+
+    @Override
+    protected long memory (int n)
+      {
+        if (numCandidates > 0 && n > 3)
+            return (BYTES_PER_LOCATION + 4L * numCandidates) * n;
+        return super.memory (n);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int [] path (CoordArray coords)
+      {
+        int n = coords.length ();
+        if (numCandidates > 0 && n > 3)
+          {
+            Weights weights = new WeightsEuclidLazy (coords);
+            ShortHamPathBE shp = new ShortHamPathBE (weights);
+            SpatialGrid grid = new SpatialGrid (coords);
+            shp.setCandidates (grid.neighbours (numCandidates));
+            int edges [] = new MinSpanTreeSpatial ().edges (coords);
+            shp.reduceBranching (edges, 0);
+            return GraphUtil.path (edges);
+          }
+
+        Weights weights = weights (coords);
+        try
+          { return path (coords.length (), weights); }
+        finally
+          { release (weights); }
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Order the locations of a dynamic MST, starting branch elimination
+    //  from the tree. The path is in terms of mst.coords ().
+
+    public int [] path (MinSpanTreeDynamic mst)
+      {
+        CoordArray coords = mst.coords ();
+        int n = coords.length ();
+        if (n <= 3)
+            return path (coords);
+
+        //  Distances are calculated as needed, as the tree is already built
+        //  and a matrix would cost O(n^2) on every call.
+
+        Weights weights = new WeightsEuclidLazy (coords);
+        int edges [] = mst.edges ();
+        new ShortHamPathBE (weights).reduceBranching (edges, 0);
+        return GraphUtil.path (edges);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Order vertices 0 to n-1 using any weights, such as travel times.
+
+    public int [] path (int n, Weights weights)
       {
-        Weights weights = new WeightsEuclid (coords);
         ShortHamPath shp = new ShortHamPathBE (weights);
-        return shp.path (coords.length);
+        return shp.path (n);
       }
   }
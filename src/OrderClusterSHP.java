@@ -0,0 +1,254 @@
+/**
+ *  Order the locations within a shot or receiver line in a physically sensible
+ *  way.
+ *
+ *  Given an array of location coordinates, method "path" returns an array
+ *  of length n = coords.length where the ordering of the coordinates is:
+ *
+ *     coords[path[0]] coords[path[1]] ... coords[path[n-1]]
+ *
+ *  This is intended for large, irregular lines. It works as follows:
+ *
+ *     1. Find the minimum-spanning tree of the locations, using a spatial
+ *        grid to avoid examining every pair (see MinSpanTreeSpatial).
+ *     2. Cut every MST edge longer than a multiple of the median edge weight,
+ *        just as Segmenter does. This splits the line into clusters that are
+ *        only weakly connected to each other.
+ *     3. Order each cluster independently with Segmented-SHP. The clusters
+ *        are ordered concurrently on a pool of worker threads, all sharing
+ *        one OrderSegmentSHP object.
+ *     4. Treat each ordered cluster as a segment, and find the Shortest
+ *        Hamiltonian Path connecting them.
+ *
+ *  Only the small clusters ever need a weights matrix. The weights for the
+ *  full line are calculated as needed.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderClusterSHP extends OrderLocns
+{
+   MinSpanTree mst = new MinSpanTreeSpatial ();
+   Segmenter segmenter = new Segmenter ();
+   SegmentShortHamPathHier shpSeg = new SegmentShortHamPathHier ();
+   OrderSegmentSHP order = new OrderSegmentSHP ();
+   ExecutorService executor = ForkJoinPool.commonPool ();
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  void setPrint (boolean print)
+    {
+      super.setPrint (print);
+      shpSeg.setPrint (print);
+      order.setPrint (print);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The MST algorithm, used both for the full line and for each cluster.
+
+  void setMinSpanTree (MinSpanTree mst)
+    {
+      this.mst = mst;
+      order.setMinSpanTree (mst);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  This is parameter "c", used both to split the line into clusters and
+  //  to segment each cluster.
+
+  void setMedianMult (float medianMult)
+    {
+      segmenter.setMedianMult (medianMult);
+      order.setMedianMult (medianMult);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  These are passed on to the Segmented-SHP ordering of each cluster.
+
+  void setMaxBranching (int maxBranching)
+    { order.setMaxBranching (maxBranching); }
+
+  void setHierarchical (boolean hierarchical)
+    { order.setHierarchical (hierarchical); }
+
+  @Override
+  void setStorage (Storage storage)
+    {
+      super.setStorage (storage);
+      order.setStorage (storage);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public String signature ()
+    {
+      return super.signature () + " mst=" + mst.getClass ().getName () +
+             " [" + order.signature () + "]";
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The worker pool on which the clusters are ordered.
+
+  void setExecutor (ExecutorService executor)
+    { this.executor = executor; }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public int [] path (CoordArray coords)
+    { return solve (coords).path (); }
+
+  @Override
+  public OrderResult solve (CoordArray coords)
+    {
+      int n = coords.length ();
+      if (n <= 2)
+        {
+          OrderResult result = order.solve (coords);
+          result.numClusters = 1;
+          return result;
+        }
+
+      //  Split the line into clusters at the long MST edges.
+
+      Weights weights = new WeightsEuclidLazy (coords);
+      int clusters [] [] = clusters (mst.edges (coords), weights);
+      if (clusters.length == 1)
+        {
+          OrderResult result = order.solve (coords);
+          result.numClusters = 1;
+          return result;
+        }
+
+      //  Order the clusters concurrently.
+
+      List <Future <OrderResult>> futures =
+          new ArrayList <> (clusters.length);
+      for (int c = 0; c < clusters.length; c++)
+        {
+          final int members [] = clusters[c];
+          futures.add (executor.submit (() -> orderCluster (coords, members)));
+        }
+      Segment segments [] = new Segment [clusters.length];
+      int numSegments = 0;
+      for (int c = 0; c < clusters.length; c++)
+        {
+          OrderResult clusterResult = await (futures.get (c));
+          segments[c] = new SegmentSeries (clusterResult.path ());
+          numSegments += clusterResult.numSegments ();
+        }
+
+      //  Connect the ordered clusters.
+
+      Segment orderedSegments [] = shpSeg.path (segments, weights, coords);
+      int path [] = new int [n];
+      int start = 0;
+      for (Segment orderedSegment : orderedSegments)
+        {
+          orderedSegment.load (path, start);
+          start += orderedSegment.length ();
+        }
+      assert start == n;
+      OrderResult result = new OrderResult (path);
+      result.numSegments = numSegments;
+      result.numClusters = clusters.length;
+      return result;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Split the MST into clusters by cutting edges beyond the segmenter's
+  //  limit. Returns the vertices of each cluster.
+
+  int [] [] clusters (int edges [], Weights weights)
+    {
+      int n = edges.length + 1;
+      float limit = segmenter.limit (edges, weights);
+
+      //  Label the connected components of the cut tree using union-find.
+
+      int root [] = new int [n];
+      for (int i = 0; i < n; i++)
+          root[i] = i;
+      for (int i = 0; i < n-1; i++)
+          if (limit == 0 || weights.value (i, edges[i]) <= limit)
+              root[find (root, i)] = find (root, edges[i]);
+
+      int label [] = new int [n], size [] = new int [n];
+      int numClusters = 0;
+      for (int i = 0; i < n; i++)
+          if (find (root, i) == i)
+              label[i] = numClusters++;
+      for (int i = 0; i < n; i++)
+          size[label[find (root, i)]] ++;
+
+      int clusters [] [] = new int [numClusters] [];
+      for (int c = 0; c < numClusters; c++)
+        {
+          clusters[c] = new int [size[c]];
+          size[c] = 0;
+        }
+      for (int i = 0; i < n; i++)
+        {
+          int c = label[find (root, i)];
+          clusters[c][size[c]++] = i;
+        }
+      return clusters;
+    }
+
+  private static int find (int root [], int i)
+    {
+      while (root[i] != i)
+        {
+          root[i] = root[root[i]];
+          i = root[i];
+        }
+      return i;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Order a single cluster. The path returned is in terms of the vertex
+  //  numbers of the full line.
+
+  private OrderResult orderCluster (CoordArray coords, int members [])
+    {
+      int m = members.length;
+      OrderResult subResult = order.solve (coords.subset (members));
+      int subPath [] = subResult.path ();
+      int vertices [] = new int [m];
+      for (int i = 0; i < m; i++)
+          vertices[i] = members[subPath[i]];
+      OrderResult result = new OrderResult (vertices);
+      result.numSegments = subResult.numSegments ();
+      return result;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static <T> T await (Future <T> future)
+    {
+      try
+        { return future.get (); }
+      catch (InterruptedException e)
+        {
+          Thread.currentThread ().interrupt ();
+          throw new IllegalStateException ("Interrupted while ordering", e);
+        }
+      catch (ExecutionException e)
+        { throw new IllegalStateException ("Cluster ordering failed",
+                                           e.getCause ()); }
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ *  Unit test for OrderClusterSHP.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
+import static CrossSpreadOrder.GraphUtil.pathWeight;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderClusterSHPTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Compare against Segmented-SHP on lines made of separated clusters.
+
+  @Test
+  public void compare ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (3310);
+      int numTests = 20;
+      float total1 = 0, total2 = 0;
+      ExecutorService executor = Executors.newFixedThreadPool (4);
+
+      for (int test = 0; test < numTests; test++)
+        {
+          Coord coords [] = clusteredLine (rand, 4 + rand.nextInt (5));
+          Weights weights = new WeightsEuclid (coords);
+
+          OrderSegmentSHP order1 = new OrderSegmentSHP ();
+          order1.setHierarchical (true);
+          OrderClusterSHP order2 = new OrderClusterSHP ();
+          order2.setHierarchical (true);
+          order2.setExecutor (executor);
+          int path1 [] = order1.path (coords);
+          int path2 [] = order2.path (coords);
+
+          assertTrue (isPathASpanningTree (path2));
+          float weight1 = pathWeight (weights, path1);
+          float weight2 = pathWeight (weights, path2);
+          printf ("   %5d %4d   %8.2f %8.2f%n",
+                  test+1, coords.length, weight1, weight2);
+          total1 += weight1;
+          total2 += weight2;
+        }
+      executor.shutdown ();
+
+      printf ("%n   Total weight:   %8.2f %8.2f%n%n", total1, total2);
+      assertTrue (total2 < 1.05 * total1);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The result must not depend on the number of worker threads.
+
+  @Test
+  public void threads ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (3311);
+      ExecutorService single = Executors.newSingleThreadExecutor ();
+      ExecutorService multiple = Executors.newFixedThreadPool (8);
+
+      for (int test = 0; test < 10; test++)
+        {
+          Coord coords [] = clusteredLine (rand, 2 + rand.nextInt (10));
+          OrderClusterSHP order = new OrderClusterSHP ();
+          order.setHierarchical (true);
+          order.setExecutor (single);
+          int path1 [] = order.path (coords);
+          order.setExecutor (multiple);
+          int path2 [] = order.path (coords);
+          assertArrayEquals (path1, path2);
+        }
+      single.shutdown ();
+      multiple.shutdown ();
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Build a line of small scattered clusters separated by gaps.
+
+  private static Coord [] clusteredLine (Random rand, int numClusters)
+    {
+      int sizes [] = new int [numClusters], n = 0;
+      for (int c = 0; c < numClusters; c++)
+          n += sizes[c] = 5 + rand.nextInt (20);
+
+      Coord coords [] = new Coord [n];
+      int count = 0;
+      for (int c = 0; c < numClusters; c++)
+        {
+          float x0 = 10 * c, y0 = 3 * rand.nextFloat ();
+          for (int i = 0; i < sizes[c]; i++)
+              coords[count++] = new Coord (x0 + 4 * rand.nextFloat (),
+                                           y0 + rand.nextFloat ());
+        }
+
+      //  Shuffle so the clusters are not numbered consecutively.
+
+      for (int i = n-1; i >= 1; i--)
+        {
+          int j = rand.nextInt (i+1);
+          Coord t = coords[i]; coords[i] = coords[j]; coords[j] = t;
+        }
+      return coords;
+    }
+}
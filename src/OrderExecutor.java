@@ -0,0 +1,224 @@
+/**
+ *  Run ordering requests as independent tasks, such as within a service that
+ *  receives many small lines.
+ *
+ *  Most lines are small (under 50 locations, say) and are ordered in well
+ *  under a millisecond, so a platform thread per request wastes memory and
+ *  context switches. Small lines are therefore run on virtual threads, one
+ *  per task, when the Java runtime provides them (Java 21 and later). On older
+ *  runtimes they are run on a cached pool of daemon threads instead. Larger
+ *  lines are run on a bounded pool of platform threads so that they cannot
+ *  swamp the processors.
+ *
+ *  Each task can be given a deadline, after which it is cancelled. Cancelling
+ *  a task interrupts its thread, and the ordering algorithms check for this
+ *  now and then (see SystemCall.checkInterrupt).
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderExecutor implements AutoCloseable
+{
+  private final OrderLocns order;
+  private final ExecutorService small, large;
+  private final ScheduledThreadPoolExecutor timer;
+  private int maxSmall = 50;
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  "order" must be safe to share between threads (see OrderLocns).
+  //  At most "numLarge" large lines are ordered at once.
+
+  public OrderExecutor (OrderLocns order, int numLarge)
+    {
+      assert numLarge > 0;
+      this.order = order;
+      small = newVirtualThreadExecutor ();
+      large = Executors.newFixedThreadPool (numLarge, daemonThreads ());
+      timer = new ScheduledThreadPoolExecutor (1, daemonThreads ());
+      timer.setRemoveOnCancelPolicy (true);
+    }
+
+  public OrderExecutor (OrderLocns order)
+    { this (order, Runtime.getRuntime ().availableProcessors ()); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Lines with at most this many locations run as small tasks.
+
+  void setMaxSmall (int maxSmall)
+    { this.maxSmall = maxSmall; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Order a line in the background.
+
+  public Future <OrderResult> submit (CoordArray coords)
+    { return executor (coords).submit (() -> order.solve (coords)); }
+
+  public Future <OrderResult> submit (Coord coords [])
+    { return submit (new CoordArrayFloat (coords)); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Order a line in the background, cancelling it if it is not done within
+  //  the timeout.
+
+  public Future <OrderResult> submit (Coord coords [], long timeout,
+                                      TimeUnit unit)
+    { return submit (new CoordArrayFloat (coords), timeout, unit); }
+
+  public Future <OrderResult> submit (CoordArray coords, long timeout,
+                                      TimeUnit unit)
+    {
+      TimedTask task = new TimedTask (() -> order.solve (coords));
+      executor (coords).execute (task);
+      task.setTimeout (timer.schedule (() -> task.cancel (true), timeout,
+                                       unit));
+      return task;
+    }
+
+  //  The number of timeouts still waiting, for testing.
+
+  int numTimeouts ()
+    { return timer.getQueue ().size (); }
+
+  private ExecutorService executor (CoordArray coords)
+    { return coords.length () <= maxSmall ? small : large; }
+
+  //  A task that cancels its timeout once it is done, so that the timer
+  //  does not hold on to it and its result until the deadline.
+
+  private static class TimedTask extends FutureTask <OrderResult>
+    {
+      private ScheduledFuture <?> timeout = null;
+
+      TimedTask (Callable <OrderResult> callable)
+        { super (callable); }
+
+      synchronized void setTimeout (ScheduledFuture <?> timeout)
+        {
+          if (isDone ())
+              timeout.cancel (false);
+          else
+              this.timeout = timeout;
+        }
+
+      @Override
+      protected synchronized void done ()
+        {
+          if (timeout != null)
+              timeout.cancel (false);
+          timeout = null;
+        }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Order every line, waiting until all are done or the timeout has passed.
+  //  Lines that are not done by then are cancelled, and their results are
+  //  null. Every task is done or cancelled when this returns.
+
+  public OrderResult [] invokeAll (Coord lines [] [], long timeout,
+                                   TimeUnit unit)
+    {
+      CoordArray coordArrays [] = new CoordArray [lines.length];
+      for (int line = 0; line < lines.length; line++)
+          coordArrays[line] = new CoordArrayFloat (lines[line]);
+      return invokeAll (coordArrays, timeout, unit);
+    }
+
+  public OrderResult [] invokeAll (CoordArray lines [], long timeout,
+                                   TimeUnit unit)
+    {
+      int numLines = lines.length;
+      long deadline = System.nanoTime () + unit.toNanos (timeout);
+      List <Future <OrderResult>> futures = new ArrayList <> (numLines);
+      for (int line = 0; line < numLines; line++)
+          futures.add (submit (lines[line]));
+
+      OrderResult results [] = new OrderResult [numLines];
+      try
+        {
+          for (int line = 0; line < numLines; line++)
+            {
+              long remaining = deadline - System.nanoTime ();
+              try
+                {
+                  results[line] = futures.get (line).get (
+                      Math.max (remaining, 0), TimeUnit.NANOSECONDS);
+                }
+              catch (TimeoutException | CancellationException e)
+                { futures.get (line).cancel (true); }
+              catch (ExecutionException e)
+                {
+                  if (! (e.getCause () instanceof CancellationException))
+                      throw new IllegalStateException ("Line ordering failed",
+                                                       e.getCause ());
+                }
+            }
+        }
+      catch (InterruptedException e)
+        {
+          Thread.currentThread ().interrupt ();
+          throw new IllegalStateException ("Interrupted while ordering", e);
+        }
+      finally
+        {
+          for (Future <OrderResult> future : futures)
+              future.cancel (true);
+        }
+      return results;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Cancel any running tasks and release the threads.
+
+  @Override
+  public void close ()
+    {
+      small.shutdownNow ();
+      large.shutdownNow ();
+      timer.shutdownNow ();
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Virtual threads are looked up by reflection so that this still compiles
+  //  and runs on runtimes older than Java 21.
+
+  private static ExecutorService newVirtualThreadExecutor ()
+    {
+      try
+        {
+          return (ExecutorService) Executors.class
+              .getMethod ("newVirtualThreadPerTaskExecutor").invoke (null);
+        }
+      catch (ReflectiveOperationException e)
+        { return Executors.newCachedThreadPool (daemonThreads ()); }
+    }
+
+  private static ThreadFactory daemonThreads ()
+    {
+      return runnable ->
+        {
+          Thread thread = new Thread (runnable);
+          thread.setDaemon (true);
+          return thread;
+        };
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ *  Unit test for OrderExecutor.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderExecutorTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Small and large lines must give the same paths as ordering directly.
+
+  @Test
+  public void compare () throws Exception
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (3001);
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      order.setHierarchical (true);
+      Coord lines [] [] = new Coord [200] [];
+      for (int line = 0; line < lines.length; line++)
+          lines[line] = randomLine (rand, 1 + rand.nextInt (line % 10 == 0
+                                                            ? 300 : 50));
+
+      try (OrderExecutor executor = new OrderExecutor (order, 2))
+        {
+          List <Future <OrderResult>> futures = new ArrayList <> ();
+          for (int line = 0; line < lines.length; line++)
+              futures.add (executor.submit (lines[line]));
+          for (int line = 0; line < lines.length; line++)
+              assertArrayEquals (order.path (lines[line]),
+                                 futures.get (line).get ().path ());
+
+          OrderResult results [] = executor.invokeAll (lines, 1, TimeUnit.HOURS);
+          for (int line = 0; line < lines.length; line++)
+              assertArrayEquals (order.path (lines[line]),
+                                 results[line].path ());
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A slow exact solve must be cancelled at its deadline.
+
+  @Test
+  public void deadline () throws Exception
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (3002);
+      OrderFullSHP order = new OrderFullSHP ();
+      Coord coords [] = new Coord [60];
+      for (int i = 0; i < coords.length; i++)
+          coords[i] = new Coord (rand.nextFloat (), rand.nextFloat ());
+
+      try (OrderExecutor executor = new OrderExecutor (order, 1))
+        {
+          Timer timer = new Timer ();
+          Future <OrderResult> future =
+              executor.submit (coords, 200, TimeUnit.MILLISECONDS);
+          boolean cancelled = false;
+          try
+            { future.get (); }
+          catch (CancellationException e)
+            { cancelled = true; }
+          assertTrue (cancelled);
+
+          OrderResult results [] = executor.invokeAll (
+              new Coord [] [] { coords }, 200, TimeUnit.MILLISECONDS);
+          assertNull (results[0]);
+          printf ("   Cancelled within %.2f seconds%n%n", timer.elapsed ());
+          assertTrue (timer.elapsed () < 10);
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Tasks that finish before their deadline must not leave their timeouts
+  //  waiting.
+
+  @Test
+  public void timeoutReleased () throws Exception
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (3003);
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      order.setHierarchical (true);
+      try (OrderExecutor executor = new OrderExecutor (order, 2))
+        {
+          for (int line = 0; line < 100; line++)
+              executor.submit (randomLine (rand, 1 + rand.nextInt (30)), 1,
+                               TimeUnit.HOURS).get ();
+
+          //  A task cancels its timeout just after its result is ready.
+
+          for (int wait = 0; wait < 100 && executor.numTimeouts () > 0; wait++)
+              Thread.sleep (10);
+          assertEquals (0, executor.numTimeouts ());
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static Coord [] randomLine (Random rand, int n)
+    {
+      Coord coords [] = new Coord [n];
+      for (int i = 0; i < n; i++)
+          coords[i] = new Coord (10 * rand.nextFloat (), rand.nextFloat ());
+      return coords;
+    }
+}
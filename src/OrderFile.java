@@ -0,0 +1,401 @@
+/*
+ *  A binary file of the orderings of many lines, which is mapped into memory
+ *  to be read, so that any line's path can be looked at without reading or
+ *  parsing the rest of the file.
+ *
+ *  The file starts with a 16-byte header of little-endian values:
+ *
+ *     magic      int   0x46535343 ("CSSF")
+ *     version    int   1
+ *     chunkBits  int   no line's block crosses a multiple of 2**chunkBits
+ *     unused     int
+ *
+ *  followed by a block for each line, then a directory of the blocks'
+ *  offsets (a long each, in the order the lines were written), then a
+ *  16-byte trailer:
+ *
+ *     directory  long  offset of the directory
+ *     numLines   int
+ *     magic      int
+ *
+ *  Each block is a 32-byte header of
+ *
+ *     lineNumber  double
+ *     n           int     number of locations
+ *     flags       int     bit 0: weights present, bit 1: point numbers present
+ *     pathWeight  double  total distance along the path, or NaN
+ *     maxStep     float   longest step along the path, or NaN
+ *     unused      int
+ *
+ *  then the columns, little-endian: the path (n ints), the rank of each
+ *  location along the path (n ints, so that ranks[path[k]] = k), and if
+ *  present the point numbers (n doubles). Every block starts on an 8-byte
+ *  boundary.
+ *
+ *  A mapping is limited to 2 GB, so the file is mapped in chunks of
+ *  2**chunkBits bytes and the writer starts a block at the next chunk if it
+ *  would otherwise cross into it. A column is then always within one
+ *  mapping and can be handed out as a buffer without copying.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderFile implements AutoCloseable
+  {
+    static final int magic = 0x46535343, version = 1;
+    private static final int headerSize = 16, trailerSize = 16,
+                             blockHeaderSize = 32;
+    private static final int WEIGHTS = 1, POINTS = 2;
+
+    private ByteBuffer chunks [];
+    private final int chunkBits;
+    private final long offsets [];
+    private final HashMap <Double, Integer> lineIndex = new HashMap <> ();
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private OrderFile (FileChannel channel, int chunkBits, long directory,
+                       int numLines) throws IOException
+      {
+        this.chunkBits = chunkBits;
+        long chunkSize = 1L << chunkBits;
+        int numChunks = (int) ((directory + chunkSize - 1) >>> chunkBits);
+        chunks = new ByteBuffer [numChunks];
+        for (int c = 0; c < numChunks; c++)
+          {
+            long start = (long) c << chunkBits;
+            chunks[c] = channel.map (FileChannel.MapMode.READ_ONLY, start,
+                                     Math.min (chunkSize, directory - start))
+                               .order (ByteOrder.LITTLE_ENDIAN);
+          }
+
+        ByteBuffer buffer = read (channel, directory, 8L * numLines);
+        offsets = new long [numLines];
+        for (int line = 0; line < numLines; line++)
+          {
+            offsets[line] = buffer.getLong ();
+            if (offsets[line] < headerSize || offsets[line] % 8 != 0 ||
+                offsets[line] + blockHeaderSize > directory)
+                throw new IOException ("Bad order file directory");
+            lineIndex.putIfAbsent (lineNumber (line), line);
+          }
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Map an order file.
+
+    public static OrderFile open (Path file) throws IOException
+      {
+        try (FileChannel channel = FileChannel.open (file,
+                                                     StandardOpenOption.READ))
+          {
+            long size = channel.size ();
+            if (size < headerSize + trailerSize)
+                throw new IOException ("Order file is truncated");
+            ByteBuffer header = read (channel, 0, headerSize);
+            if (header.getInt () != magic)
+                throw new IOException ("Not an order file: " + file);
+            if (header.getInt () != version)
+                throw new IOException ("Unsupported order file version");
+            int chunkBits = header.getInt ();
+
+            ByteBuffer trailer = read (channel, size - trailerSize,
+                                       trailerSize);
+            long directory = trailer.getLong ();
+            int numLines = trailer.getInt ();
+            if (trailer.getInt () != magic)
+                throw new IOException ("Order file is truncated");
+            if (chunkBits < 8 || chunkBits > 30 || numLines < 0 ||
+                directory < headerSize ||
+                directory + 8L * numLines + trailerSize != size)
+                throw new IOException ("Bad order file header");
+
+            return new OrderFile (channel, chunkBits, directory, numLines);
+          }
+      }
+
+    private static ByteBuffer read (FileChannel channel, long position,
+                                    long length) throws IOException
+      {
+        if (length > Integer.MAX_VALUE)
+            throw new IOException ("Order file directory is too large");
+        ByteBuffer buffer = ByteBuffer.allocate ((int) length)
+                                      .order (ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining ())
+            if (channel.read (buffer, position + buffer.position ()) < 0)
+                throw new IOException ("Order file is truncated");
+        buffer.flip ();
+        return buffer;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public int numLines ()
+      { return offsets.length; }
+
+    //  The index of the first line with this line number, or -1 if there is
+    //  none.
+
+    public int find (double lineNumber)
+      {
+        Integer line = lineIndex.get (lineNumber == 0 ? 0 : lineNumber);
+        return line == null ? -1 : line;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The values of line number "line" (counting from 0, in the order they
+    //  were written).
+
+    public double lineNumber (int line)
+      { return chunk (line).getDouble (position (line)); }
+
+    public int size (int line)
+      { return chunk (line).getInt (position (line) + 8); }
+
+    public boolean hasWeights (int line)
+      { return (flags (line) & WEIGHTS) != 0; }
+
+    public boolean hasPointNumbers (int line)
+      { return (flags (line) & POINTS) != 0; }
+
+    //  NaN if the line has no weights.
+
+    public double pathWeight (int line)
+      { return chunk (line).getDouble (position (line) + 16); }
+
+    public float maxStep (int line)
+      { return chunk (line).getFloat (position (line) + 24); }
+
+    //  The columns are read-only views of the mapping.
+
+    public IntBuffer path (int line)
+      { return column (line, 0, 4).asIntBuffer (); }
+
+    public IntBuffer ranks (int line)
+      { return column (line, 1, 4).asIntBuffer (); }
+
+    //  Null if the line has no point numbers.
+
+    public DoubleBuffer pointNumbers (int line)
+      {
+        if (! hasPointNumbers (line))
+            return null;
+        return column (line, 2, 8).asDoubleBuffer ();
+      }
+
+    //  The path copied into an array.
+
+    public int [] pathArray (int line)
+      {
+        int path [] = new int [size (line)];
+        path (line).get (path);
+        return path;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private ByteBuffer chunk (int line)
+      { return chunks[(int) (offsets[line] >>> chunkBits)]; }
+
+    private int position (int line)
+      { return (int) (offsets[line] & ((1L << chunkBits) - 1)); }
+
+    private int flags (int line)
+      { return chunk (line).getInt (position (line) + 12); }
+
+    //  Column 0 is the path, 1 the ranks and 2 the point numbers.
+
+    private ByteBuffer column (int line, int column, int width)
+      {
+        int n = size (line);
+        int start = position (line) + blockHeaderSize + 4 * column * n;
+        return chunk (line).slice (start, width * n)
+                           .order (ByteOrder.LITTLE_ENDIAN);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Release the mappings. (Java 17 cannot unmap a file immediately; the
+    //  pages are unmapped when the buffer objects are collected.)
+
+    @Override
+    public void close ()
+      { chunks = null; }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Start writing an order file.
+
+    public static Writer create (Path file) throws IOException
+      { return new Writer (file); }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Writes the lines one at a time. Each block is written with one
+    //  gathering write of its header and columns. The directory and trailer
+    //  are written by close.
+
+    public static class Writer implements AutoCloseable
+      {
+        private final FileChannel channel;
+        private int chunkBits = 30;
+        private long position = headerSize;
+        private long offsets [] = new long [64];
+        private int numLines = 0;
+        private boolean headerWritten = false;
+
+        private Writer (Path file) throws IOException
+          {
+            channel = FileChannel.open (file, StandardOpenOption.CREATE,
+                                        StandardOpenOption.WRITE,
+                                        StandardOpenOption.TRUNCATE_EXISTING);
+          }
+
+        //  Used to test the chunking with small files. Set before writing.
+
+        void setChunkBits (int chunkBits)
+          {
+            assert chunkBits >= 8 && chunkBits <= 30 && ! headerWritten;
+            this.chunkBits = chunkBits;
+          }
+
+        ////////////////////////////////////////////////////////////////////////
+        //  Write a line's path, with no weights or point numbers.
+
+        public void write (double lineNumber, int path [])
+            throws IOException
+          { write (lineNumber, path, Double.NaN, Float.NaN, null); }
+
+        //  Write a line's path with the weights along it measured on its
+        //  coordinates.
+
+        public void write (double lineNumber, int path [], CoordArray coords)
+            throws IOException
+          { writeMeasured (lineNumber, path, coords, null); }
+
+        //  Write a line read from an SPS file and its ordering, with weights
+        //  and point numbers.
+
+        public void write (SpsReader.Line line, OrderResult result)
+            throws IOException
+          {
+            writeMeasured (line.lineNumber (), result.path (), line.coords (),
+                           line.pointNumbers ());
+          }
+
+        private void writeMeasured (double lineNumber, int path [],
+                                    CoordArray coords, double pointNumbers [])
+            throws IOException
+          {
+            double pathWeight = 0;
+            float maxStep = 0;
+            for (int k = 1; k < path.length; k++)
+              {
+                float step = coords.distanceHypot (path[k - 1], path[k]);
+                pathWeight += step;
+                maxStep = Math.max (maxStep, step);
+              }
+            write (lineNumber, path, pathWeight, maxStep, pointNumbers);
+          }
+
+        private void write (double lineNumber, int path [], double pathWeight,
+                            float maxStep, double pointNumbers [])
+            throws IOException
+          {
+            int n = path.length;
+            assert pointNumbers == null || pointNumbers.length == n;
+            writeHeader ();
+
+            int flags = (Double.isNaN (pathWeight) ? 0 : WEIGHTS) |
+                        (pointNumbers == null ? 0 : POINTS);
+            ByteBuffer header = ByteBuffer.allocate (blockHeaderSize)
+                                          .order (ByteOrder.LITTLE_ENDIAN);
+            header.putDouble (lineNumber).putInt (n).putInt (flags)
+                  .putDouble (pathWeight).putFloat (maxStep).putInt (0).flip ();
+
+            ByteBuffer pathColumn = ByteBuffer.allocate (4 * n)
+                                              .order (ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer rankColumn = ByteBuffer.allocate (4 * n)
+                                              .order (ByteOrder.LITTLE_ENDIAN);
+            int ranks [] = new int [n];
+            for (int k = 0; k < n; k++)
+                ranks[path[k]] = k;
+            pathColumn.asIntBuffer ().put (path);
+            rankColumn.asIntBuffer ().put (ranks);
+            ByteBuffer pointColumn = ByteBuffer.allocate (
+                pointNumbers == null ? 0 : 8 * n).order (ByteOrder.LITTLE_ENDIAN);
+            if (pointNumbers != null)
+                pointColumn.asDoubleBuffer ().put (pointNumbers);
+
+            //  Start at the next chunk rather than cross into it.
+
+            long blockSize = blockHeaderSize + 8L * n + pointColumn.capacity ();
+            long chunkSize = 1L << chunkBits;
+            if (blockSize > chunkSize)
+                throw new IOException ("Line " + lineNumber +
+                                       " is too large for an order file");
+            if ((position & (chunkSize - 1)) + blockSize > chunkSize)
+                position = (position + chunkSize - 1) & ~(chunkSize - 1);
+
+            if (numLines == offsets.length)
+                offsets = Arrays.copyOf (offsets, 2 * numLines);
+            offsets[numLines++] = position;
+
+            ByteBuffer buffers [] = { header, pathColumn, rankColumn,
+                                      pointColumn };
+            channel.position (position);
+            long written = 0;
+            while (written < blockSize)
+                written += channel.write (buffers);
+            position += blockSize;
+          }
+
+        private void writeHeader () throws IOException
+          {
+            if (headerWritten)
+                return;
+            ByteBuffer header = ByteBuffer.allocate (headerSize)
+                                          .order (ByteOrder.LITTLE_ENDIAN);
+            header.putInt (magic).putInt (version).putInt (chunkBits)
+                  .putInt (0).flip ();
+            while (header.hasRemaining ())
+                channel.write (header, header.position ());
+            headerWritten = true;
+          }
+
+        ////////////////////////////////////////////////////////////////////////
+        //  Write the directory and trailer and close the file.
+
+        @Override
+        public void close () throws IOException
+          {
+            try
+              {
+                writeHeader ();
+                ByteBuffer directory = ByteBuffer.allocate (
+                    8 * numLines + trailerSize).order (ByteOrder.LITTLE_ENDIAN);
+                for (int line = 0; line < numLines; line++)
+                    directory.putLong (offsets[line]);
+                directory.putLong (position).putInt (numLines).putInt (magic)
+                         .flip ();
+                while (directory.hasRemaining ())
+                    channel.write (directory, position + directory.position ());
+              }
+            finally
+              { channel.close (); }
+          }
+      }
+  }
@@ -0,0 +1,198 @@
+/**
+ *  Unit test for OrderFile.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderFileTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Lines written must read back the same, with small chunks so that
+  //  blocks are moved to the next chunk.
+
+  @Test
+  public void readWrite () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (5001);
+      Path file = Files.createTempFile ("order", ".bin");
+      try
+        {
+          for (int chunkBits : new int [] { 12, 30 })
+            {
+              int numLines = 60;
+              int paths [] [] = new int [numLines] [];
+              CoordArrayFloat coords [] = new CoordArrayFloat [numLines];
+              double points [] [] = new double [numLines] [];
+              OrderSegmentSHP order = new OrderSegmentSHP ();
+              order.setHierarchical (true);
+              try (OrderFile.Writer writer = OrderFile.create (file))
+                {
+                  writer.setChunkBits (chunkBits);
+                  for (int line = 0; line < numLines; line++)
+                    {
+                      int n = rand.nextInt (200);
+                      coords[line] = new CoordArrayFloat (n);
+                      points[line] = new double [n];
+                      for (int i = 0; i < n; i++)
+                        {
+                          coords[line].set (i, 100 * rand.nextFloat (),
+                                            rand.nextFloat ());
+                          points[line][i] = 1000 + 0.5 * i;
+                        }
+                      paths[line] = order.path (coords[line]);
+                      switch (line % 3)
+                        {
+                          case 0:  writer.write (line, paths[line]);
+                                   break;
+                          case 1:  writer.write (line, paths[line],
+                                                 coords[line]);
+                                   break;
+                          default: writer.write (new SpsReader.Line (line,
+                                                     coords[line],
+                                                     points[line]),
+                                                 new OrderResult (
+                                                     paths[line]));
+                        }
+                    }
+                }
+
+              try (OrderFile orders = OrderFile.open (file))
+                {
+                  assertEquals (numLines, orders.numLines ());
+                  for (int line = numLines - 1; line >= 0; line--)
+                    {
+                      int n = paths[line].length;
+                      assertEquals (line, orders.find (line));
+                      assertEquals (line, orders.lineNumber (line), 0);
+                      assertEquals (n, orders.size (line));
+                      assertArrayEquals (paths[line], orders.pathArray (line));
+
+                      IntBuffer path = orders.path (line),
+                                ranks = orders.ranks (line);
+                      for (int k = 0; k < n; k++)
+                          assertEquals (k, ranks.get (path.get (k)));
+
+                      assertEquals (line % 3 != 0, orders.hasWeights (line));
+                      if (orders.hasWeights (line))
+                        {
+                          Weights weights = new WeightsEuclid (coords[line]);
+                          assertEquals (GraphUtil.pathWeight (weights,
+                                            paths[line]),
+                                        orders.pathWeight (line), 0.01);
+                          for (int k = 1; k < n; k++)
+                              assertTrue (orders.maxStep (line) >=
+                                  coords[line].distanceHypot (paths[line][k - 1],
+                                                              paths[line][k]));
+                        }
+                      else
+                          assertTrue (Double.isNaN (orders.pathWeight (line)));
+
+                      DoubleBuffer pointNumbers = orders.pointNumbers (line);
+                      assertEquals (line % 3 == 2, pointNumbers != null);
+                      if (pointNumbers != null)
+                          for (int i = 0; i < n; i++)
+                              assertEquals (points[line][i],
+                                            pointNumbers.get (i), 0);
+                    }
+                  assertEquals (-1, orders.find (numLines));
+                }
+            }
+
+          //  A file that is not an order file must be rejected.
+
+          Files.write (file, new byte [40]);
+          boolean thrown = false;
+          try
+            { OrderFile.open (file); }
+          catch (IOException e)
+            { thrown = true; }
+          assertTrue (thrown);
+        }
+      finally
+        { Files.delete (file); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Time writing and reading back many lines, against text.
+
+  @Test
+  public void timing () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (5002);
+      int numLines = 2000, n = 1000;
+      int path [] = new int [n];
+      for (int i = 0; i < n; i++)
+          path[i] = i;
+      for (int i = n - 1; i > 0; i--)
+        {
+          int j = rand.nextInt (i + 1);
+          int t = path[i]; path[i] = path[j]; path[j] = t;
+        }
+
+      Path file = Files.createTempFile ("order", ".bin");
+      try
+        {
+          Timer timer = new Timer ();
+          try (OrderFile.Writer writer = OrderFile.create (file))
+            {
+              for (int line = 0; line < numLines; line++)
+                  writer.write (line, path);
+            }
+          double writeTime = timer.elapsed ();
+
+          timer.restart ();
+          long sum = 0;
+          try (OrderFile orders = OrderFile.open (file))
+            {
+              for (int line = 0; line < numLines; line++)
+                {
+                  IntBuffer p = orders.path (line);
+                  for (int k = 0; k < n; k++)
+                      sum += p.get (k);
+                }
+            }
+          double readTime = timer.elapsed ();
+          assertEquals ((long) numLines * n * (n - 1) / 2, sum);
+
+          timer.restart ();
+          StringBuilder text = new StringBuilder ();
+          for (int k = 0; k < n; k++)
+              text.append (path[k]).append (' ');
+          String line = text.toString ();
+          long textSum = 0;
+          for (int l = 0; l < numLines; l++)
+              for (String token : line.split (" "))
+                  textSum += Integer.parseInt (token);
+          assertEquals (sum, textSum);
+          printf ("   %d lines of %d: write %.3f s, read %.3f s, " +
+                  "parse text %.3f s%n%n", numLines, n, writeTime, readTime,
+                  timer.elapsed ());
+        }
+      finally
+        { Files.delete (file); }
+    }
+}
@@ -21,16 +21,60 @@ package CrossSpreadOrder;
 
 public class OrderFullSHP extends OrderLocns
   {
+    //  Quantized lines of up to this many locations are solved by dynamic
+    //  programming, which takes O(2**n n**2) time and O(2**n n) memory.
+
+    static final int MAX_DYNAMIC = 16;
+
+    private boolean quantized = false;
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Search using 16-bit quantized weights (see WeightsQuantized). This is
+    //  faster and the path weights are exact, but paths whose weights differ
+    //  by less than the rounding may be confused.
+
+    void setQuantized (boolean quantized)
+      { this.quantized = quantized; }
+
     @Override
-    public int [] path (Coord coords [])
+    public String signature ()
+      { return super.signature () + " quantized=" + quantized; }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int [] path (CoordArray coords)
       {
-        int numPoints = coords.length;
+        int numPoints = coords.length ();
         if (numPoints <= 1)
             return new int [numPoints];
         
-        Weights weights = new WeightsEuclid (coords);
-        ShortHamPath shp = new ShortHamPathBAB (weights);
+        Weights weights = weights (coords);
+        if (! quantized)
+          {
+            try
+              {
+                ShortHamPath shp = new ShortHamPathBAB (weights);
+                shp.setPrint (print);
+                return shp.path (numPoints);
+              }
+            finally
+              { release (weights); }
+          }
+
+        //  Release the float matrix before searching, so that only the
+        //  16-bit copy is held during the search. Small problems are solved
+        //  with the integer dynamic program.
+
+        WeightsQuantized quantizedWeights;
+        try
+          { quantizedWeights = new WeightsQuantized (numPoints, weights); }
+        finally
+          { release (weights); }
+        ShortHamPath shp = numPoints <= MAX_DYNAMIC
+            ? new ShortHamPathDynamic (quantizedWeights)
+            : new ShortHamPathBAB (quantizedWeights.unitWeights ());
         shp.setPrint (print);
-        return shp.path (coords.length);
+        return shp.path (numPoints);
       }
   }
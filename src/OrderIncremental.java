@@ -0,0 +1,220 @@
+/**
+ *  Keep a line ordered as its locations arrive a few at a time, such as
+ *  while the line is being shot.
+ *
+ *  Ordering the whole line again after every arrival would rebuild the
+ *  weights matrix and MST each time. Instead the path and MST are kept
+ *  between calls, and each new location is
+ *
+ *     1. Inserted into the path where it adds the least weight.
+ *     2. Improved by 2-opt moves (reversing a stretch of the path) near
+ *        where it was inserted.
+ *     3. Added to the MST (see MinSpanTreeDynamic).
+ *
+ *  The MST weight is a lower bound on the path weight, so the ratio of the
+ *  two measures how good the path is. After a full solve with Segmented-SHP
+ *  the ratio is recorded, and once the local repairs let it grow by more
+ *  than a given factor (5% by default) the line is solved in full again.
+ *
+ *  Only the path and MST are kept between calls, not the segments, and a
+ *  full solve orders the whole line again rather than just the segments
+ *  near the new locations. The segmenter's cut limit depends on every MST
+ *  edge, so an arrival can move segment boundaries anywhere in the line,
+ *  and the segments are then ordered by one search over them all. A full
+ *  solve does reuse the MST, and calculates distances as needed rather
+ *  than building a weights matrix, so it takes O(n) memory, and close to
+ *  linear time in hierarchical mode (see OrderSegmentSHP.setHierarchical).
+ *
+ *  Unlike the OrderLocns classes, this keeps state, so an object should be
+ *  used for one line by one thread at a time.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.GraphUtil.pathWeight;
+
+import java.util.Arrays;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderIncremental
+{
+   private final OrderSegmentSHP order;
+   private final MinSpanTreeDynamic mst = new MinSpanTreeDynamic ();
+   private final Weights weights = new WeightsEuclidLazy (mst.locations ());
+
+   private int path [] = new int [0];
+   private double pathWeight = 0;
+   private double baseRatio = 1;
+
+   private float maxRatio = 1.05F;
+   private int window = 8;
+   private int numFullSolves = 0;
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  "order" is used for the full solves.
+
+  public OrderIncremental (OrderSegmentSHP order)
+    { this.order = order; }
+
+  public OrderIncremental ()
+    { this (new OrderSegmentSHP ()); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Solve in full once the path to MST weight ratio is more than this
+  //  multiple of its value after the last full solve.
+
+  void setMaxRatio (float maxRatio)
+    {
+      assert maxRatio >= 1;
+      this.maxRatio = maxRatio;
+    }
+
+  //  2-opt moves are tried within this many path positions of a new
+  //  location.
+
+  void setWindow (int window)
+    {
+      assert window >= 1;
+      this.window = window;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Add locations to the line. They are numbered in the order added,
+  //  following those already there.
+
+  public void add (CoordArray coords)
+    {
+      for (int i = 0; i < coords.length (); i++)
+          insert (mst.insert (coords.x (i), coords.y (i)));
+      if (pathWeight > maxRatio * baseRatio * mst.weight ())
+          solve ();
+    }
+
+  public void add (Coord coords [])
+    { add (new CoordArrayFloat (coords)); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The current ordering of all locations added so far.
+
+  public int [] path ()
+    { return path.clone (); }
+
+  public int size ()
+    { return mst.size (); }
+
+  //  The number of times the line has been solved in full.
+
+  int numFullSolves ()
+    { return numFullSolves; }
+
+  //  The path weight divided by the MST weight.
+
+  double ratio ()
+    { return mst.weight () > 0 ? pathWeight / mst.weight () : 1; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Solve the whole line again with Segmented-SHP, reusing the MST. No
+  //  location is ever deleted, so every identifier is a vertex.
+
+  public void solve ()
+    {
+      int n = mst.size ();
+      path = order.solve (n, weights, mst.edges (), mst.locations ()).path ();
+      pathWeight = pathWeight (weights, path);
+      baseRatio = ratio ();
+      numFullSolves++;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Insert the newest location p into the path and the MST.
+
+  private void insert (int p)
+    {
+      int n = p + 1;
+      if (n <= 3)
+        {
+          solve ();
+          return;
+        }
+
+      //  Cheapest insertion, including at either end.
+
+      int bestPosition = 0;
+      float bestIncrease = weights.value (p, path[0]);
+      float increase = weights.value (path[n-2], p);
+      if (increase < bestIncrease)
+        {
+          bestPosition = n-1;
+          bestIncrease = increase;
+        }
+      for (int k = 1; k < n-1; k++)
+        {
+          int a = path[k-1], b = path[k];
+          increase = weights.value (a, p) + weights.value (p, b) -
+                     weights.value (a, b);
+          if (increase < bestIncrease)
+            {
+              bestPosition = k;
+              bestIncrease = increase;
+            }
+        }
+
+      path = Arrays.copyOf (path, n);
+      System.arraycopy (path, bestPosition, path, bestPosition + 1,
+                        n - 1 - bestPosition);
+      path[bestPosition] = p;
+      pathWeight += bestIncrease;
+
+      twoOpt (bestPosition);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Improve the path near position k by reversing path[i+1..j] wherever
+  //  that shortens it, until no such move is left. Either end of the
+  //  reversed stretch may be an end of the path.
+
+  private void twoOpt (int k)
+    {
+      int n = path.length;
+      int first = Math.max (-1, k - window), last = Math.min (n-1, k + window);
+      boolean improved = true;
+      for (int iter = 0; improved && iter < 4 * window; iter++)
+        {
+          improved = false;
+          for (int i = first; i < last && ! improved; i++)
+          for (int j = i + 2; j <= last && ! improved; j++)
+            {
+              float before = 0, after = 0;
+              if (i >= 0)
+                {
+                  before += weights.value (path[i], path[i+1]);
+                  after += weights.value (path[i], path[j]);
+                }
+              if (j < n-1)
+                {
+                  before += weights.value (path[j], path[j+1]);
+                  after += weights.value (path[i+1], path[j+1]);
+                }
+              if (after < before)
+                {
+                  reverse (path, i+1, j);
+                  pathWeight += after - before;
+                  improved = true;
+                }
+            }
+        }
+    }
+
+  private static void reverse (int path [], int from, int to)
+    {
+      for (; from < to; from++, to--)
+        {
+          int t = path[from];
+          path[from] = path[to];
+          path[to] = t;
+        }
+    }
+}
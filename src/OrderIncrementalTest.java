@@ -0,0 +1,100 @@
+/**
+ *  Unit test for OrderIncremental.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
+import static CrossSpreadOrder.GraphUtil.pathWeight;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderIncrementalTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Add the locations of a line a few at a time, in roughly the order they
+  //  are shot, and compare against solving the line in full each time.
+
+  @Test
+  public void compare ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4401);
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      order.setHierarchical (true);
+      printf ("      n   Solves   Incremental       Full   Ratio%n");
+
+      for (int test = 0; test < 4; test++)
+        {
+          int n = 200 + rand.nextInt (300);
+          CoordArrayFloat coords = shotLine (rand, n);
+          OrderIncremental incremental = new OrderIncremental (order);
+          double timeIncremental = 0, timeFull = 0;
+
+          for (int added = 0; added < n; )
+            {
+              int m = Math.min (n - added, 1 + rand.nextInt (5));
+              int batch [] = new int [m];
+              for (int i = 0; i < m; i++)
+                  batch[i] = added + i;
+              CoordArrayFloat batchCoords = coords.subset (batch);
+              added += m;
+
+              Timer timer = new Timer ();
+              incremental.add (batchCoords);
+              timeIncremental += timer.elapsed ();
+              assertEquals (added, incremental.size ());
+              assertTrue (isPathASpanningTree (incremental.path ()));
+
+              int subset [] = new int [added];
+              for (int i = 0; i < added; i++)
+                  subset[i] = i;
+              timer.restart ();
+              order.path (coords.subset (subset));
+              timeFull += timer.elapsed ();
+            }
+
+          Weights weights = new WeightsEuclid (coords);
+          float weight1 = pathWeight (weights, incremental.path ());
+          float weight2 = pathWeight (weights, order.path (coords));
+          printf ("   %4d   %6d   %11.3f %10.3f   %5.3f%n", n,
+                  incremental.numFullSolves (), weight1, weight2,
+                  incremental.ratio ());
+          printf ("   Time   %6s   %11.3f %10.3f s%n", "",
+                  timeIncremental, timeFull);
+          assertTrue (weight1 < 1.1 * weight2);
+          assertTrue (incremental.numFullSolves () < n / 4);
+        }
+      printf ("%n");
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A line shot back and forth in strips, with locations arriving roughly
+  //  in order along the strips.
+
+  private static CoordArrayFloat shotLine (Random rand, int n)
+    {
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int i = 0; i < n; i++)
+        {
+          int strip = i / 50;
+          float along = (i % 50) + 0.3F * (float) rand.nextGaussian ();
+          if (strip % 2 == 1)
+              along = 50 - along;
+          coords.set (i, along, 3 * strip + 0.3F * (float) rand.nextGaussian ());
+        }
+      return coords;
+    }
+}
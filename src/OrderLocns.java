@@ -7,6 +7,15 @@
  *
  *     coords[path[0]] coords[path[1]] ... coords[path[n-1]]
  *
+ *  Method "solve" returns the same path along with diagnostics.
+ *
+ *  The coordinates are given either as a CoordArray, which derived classes
+ *  implement, or as an array of Coord objects, which is converted.
+ *
+ *  Derived classes must keep no state between calls other than their
+ *  settings, so that one configured object can order many lines at once
+ *  from different threads.
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
@@ -17,9 +26,76 @@ package CrossSpreadOrder;
 
 abstract public class OrderLocns
 {
-  abstract public int [] path (Coord coords []);
+  abstract public int [] path (CoordArray coords);
+
+  public OrderResult solve (CoordArray coords)
+    { return new OrderResult (path (coords)); }
+
+  public int [] path (Coord coords [])
+    { return path (new CoordArrayFloat (coords)); }
+
+  public OrderResult solve (Coord coords [])
+    { return solve (new CoordArrayFloat (coords)); }
 
   protected boolean print = false;
   void setPrint (boolean print)
     { this.print = print; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The algorithm and every setting that can change the paths it gives,
+  //  used to recognise lines that have been ordered before (see
+  //  LineFingerprint). Derived classes with such settings add them.
+
+  public String signature ()
+    { return getClass ().getName (); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  How the weights matrix of a line is stored, for those algorithms that
+  //  need one: a full matrix (fastest), a packed triangle (half the memory),
+  //  or a packed triangle outside the Java heap.
+
+  enum Storage { Matrix, Packed, Direct }
+
+  protected Storage storage = Storage.Matrix;
+  void setStorage (Storage storage)
+    { this.storage = storage; }
+
+  //  Build the weights for a line. Call "release" once they are done with.
+
+  protected Weights weights (CoordArray coords)
+    {
+      switch (storage)
+        {
+          case Packed: return new WeightsPacked (coords);
+          case Direct: return new WeightsPackedDirect (coords);
+          default:     return new WeightsEuclid (coords);
+        }
+    }
+
+  protected static void release (Weights weights)
+    {
+      if (weights instanceof WeightsPackedDirect)
+          ((WeightsPackedDirect) weights).close ();
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Estimated Java heap memory in bytes needed to order a line of n
+  //  locations, which OrderBatch uses to limit how many lines run at once.
+  //  This is dominated by the weights as stored: a full matrix of floats,
+  //  or half that packed. Direct weights lie outside the heap, and so
+  //  outside Runtime.maxMemory, leaving only the memory that grows with n.
+  //  Algorithms that need no weights matrix override this.
+
+  protected static final long BYTES_PER_LOCATION = 64;
+
+  protected long memory (int n)
+    {
+      long linear = BYTES_PER_LOCATION * n;
+      switch (storage)
+        {
+          case Packed: return linear + 2L * n * (n - 1);
+          case Direct: return linear;
+          default:     return linear + 4L * n * n;
+        }
+    }
 }
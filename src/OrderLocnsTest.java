@@ -9,10 +9,14 @@ package CrossSpreadOrder;
 import static CrossSpreadOrder.Print.printf;
 import static CrossSpreadOrder.SystemCall.className;
 import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -70,4 +74,113 @@ public class OrderLocnsTest
         }
       printf ("%n");
     }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  One ordering object must be able to serve many threads at once and
+  //  give the same results as serving them one at a time.
+
+  @Test
+  public void concurrent ()
+    {
+      printf ("%s: %s%n%n", className (), methodName( ));
+
+      int numLines = 200;
+      Random rand = new Random (6105);
+      Coord lines [] [] = new Coord [numLines] [];
+      for (int line = 0; line < numLines; line++)
+        {
+          int n = rand.nextInt (30);
+          lines[line] = new Coord [n];
+          for (int i = 0; i < n; i++)
+              lines[line][i] = new Coord (400 * rand.nextFloat (),
+                                          100 * rand.nextFloat ());
+        }
+
+      ExecutorService executor = Executors.newFixedThreadPool (4);
+      OrderClusterSHP orderCluster = new OrderClusterSHP ();
+      orderCluster.setExecutor (executor);
+      OrderSegmentSHP orderHier = new OrderSegmentSHP ();
+      orderHier.setHierarchical (true);
+      OrderLocns shared [] = new OrderLocns []
+        {
+          new OrderProjectOntoLine (),
+          new OrderBranchEliminate (),
+          new OrderSegmentSHP (),
+          orderHier,
+          orderCluster,
+        };
+
+      for (OrderLocns ordering : shared)
+        {
+          int serial [] [] = new int [numLines] [];
+          for (int line = 0; line < numLines; line++)
+              serial[line] = ordering.solve (lines[line]).path ();
+
+          int parallel [] [] = new int [numLines] [];
+          IntStream.range (0, numLines).parallel ().forEach (line ->
+              parallel[line] = ordering.solve (lines[line]).path ());
+
+          for (int line = 0; line < numLines; line++)
+              assertArrayEquals (serial[line], parallel[line]);
+          printf ("   %-25s   ok%n", ordering.getClass().getSimpleName());
+        }
+      executor.shutdown ();
+      printf ("%n");
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Parallel projection ordering must give the same path as serial, apart
+  //  from locations with almost equal projections.
+
+  @Test
+  public void projectParallel ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      int n = 2000000;
+      Random rand = new Random (4202);
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int i = 0; i < n; i++)
+          coords.set (i, 100000 * rand.nextFloat (), 100 * rand.nextFloat ());
+
+      OrderProjectOntoLine serial = new OrderProjectOntoLine ();
+      OrderProjectOntoLine parallel = new OrderProjectOntoLine ();
+      parallel.setParallel (true);
+
+      Timer timer = new Timer ();
+      int path1 [] = serial.path (coords);
+      double time1 = timer.elapsed ();
+      timer.restart ();
+      int path2 [] = parallel.path (coords);
+      double time2 = timer.elapsed ();
+      printf ("   n = %d: serial %.3f s, parallel %.3f s on %d processors%n%n",
+              n, time1, time2, Runtime.getRuntime ().availableProcessors ());
+
+      assertTrue (GraphUtil.isPathASpanningTree (path2));
+      int numDiffer = 0;
+      for (int i = 0; i < n; i++)
+          if (path1[i] != path2[i])
+            {
+              numDiffer++;
+              assertEquals (coords.x (path1[i]), coords.x (path2[i]), 0.1F);
+            }
+      assertTrue (numDiffer < n / 100);
+
+      //  Ordering along a line fitted while streaming the locations.
+
+      LineFit2DAccumulator accumulator = new LineFit2DAccumulator ();
+      for (int i = 0; i < n; i++)
+          accumulator.add (coords.x (i), coords.y (i));
+      LineFit2D lineFit = new LineFit2D ();
+      lineFit.fit (accumulator);
+      int path3 [] = serial.path (coords, lineFit);
+      numDiffer = 0;
+      for (int i = 0; i < n; i++)
+          if (path1[i] != path3[i])
+            {
+              numDiffer++;
+              assertEquals (coords.x (path1[i]), coords.x (path3[i]), 0.1F);
+            }
+      assertTrue (numDiffer < n / 100);
+    }
 }
@@ -16,30 +16,57 @@
  *  This is only a reasonable approach if the shots are laid out
  *  more-or-less linearly. Any "backtracking" results in nasty zig-zagging.
  *
+ *  It takes O(n) time, so it's used for quick-look ordering of entire
+ *  surveys. With setParallel, all three steps use every processor on
+ *  large inputs.
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
 
 package CrossSpreadOrder;
 
+import java.util.stream.IntStream;
+
 ////////////////////////////////////////////////////////////////////////////////
 
 public class OrderProjectOntoLine extends OrderLocns
 {
-   LineFit2D lineFit = new LineFit2D ();
+   private boolean parallel = false;
+   private static final int MIN_PARALLEL = 100000;
 
    /////////////////////////////////////////////////////////////////////////////
+   //  Fit, project and sort in parallel when there are many locations.
+
+   void setParallel (boolean parallel)
+     { this.parallel = parallel; }
 
    @Override
-   public int [] path (Coord coords [])
+   public String signature ()
+     { return super.signature () + " parallel=" + parallel; }
+
+   @Override
+   protected long memory (int n)
+     { return BYTES_PER_LOCATION * n; }
+
+   /////////////////////////////////////////////////////////////////////////////
+
+   @Override
+   public int [] path (CoordArray coords)
      {
-       int numPoints = coords.length;
+       if (coords instanceof CoordArrayFloat)
+         {
+           CoordArrayFloat coordsFloat = (CoordArrayFloat) coords;
+           return path (coordsFloat.xArray (), coordsFloat.yArray ());
+         }
+
+       int numPoints = coords.length ();
        float x [] = new float [numPoints];
        float y [] = new float [numPoints];
        for (int i = 0; i < numPoints; i++)
          {
-           x[i] = coords[i].x();
-           y[i] = coords[i].y();
+           x[i] = coords.x (i);
+           y[i] = coords.y (i);
          }
        return path (x, y);
      }
@@ -53,24 +80,51 @@ public class OrderProjectOntoLine extends OrderLocns
        if (numPoints <= 1)
            return new int [numPoints];
 
+       boolean isParallel = parallel && numPoints >= MIN_PARALLEL;
+
        //  Fit a line to the points.
 
-       lineFit.fit (x, y);
+       LineFit2D lineFit = new LineFit2D ();
+       if (isParallel)
+           lineFit.fitParallel (x, y);
+       else
+           lineFit.fit (x, y);
+
+       //  Project the locations onto the line and sort them. The arrays are
+       //  wrapped, not copied.
+
+       return path (new CoordArrayFloat (x, y), lineFit);
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  Order the locations along a line that has already been fitted, such
+   //  as with a LineFit2DAccumulator fed while reading the survey. The
+   //  coordinates are only read, never copied, so they can stay outside
+   //  the Java heap (see CoordArrayDirect).
+
+   public int [] path (CoordArray coords, LineFit2D lineFit)
+     {
+       int numPoints = coords.length ();
+       boolean isParallel = parallel && numPoints >= MIN_PARALLEL;
 
        //  Project the locations onto the line orthogonally.
 
        float xAvg = lineFit.xAvg (), yAvg = lineFit.yAvg (),
              xDir = lineFit.xDir (), yDir = lineFit.yDir ();
        float projections [] = new float [numPoints];
-       for (int i = 0; i < numPoints; i++)
-           projections[i] = (x[i] - xAvg) * xDir + (y[i] - yAvg) * yDir;
+       if (isParallel)
+           IntStream.range (0, numPoints).parallel ().forEach (i ->
+               projections[i] = (coords.x (i) - xAvg) * xDir +
+                                (coords.y (i) - yAvg) * yDir);
+       else
+           for (int i = 0; i < numPoints; i++)
+               projections[i] = (coords.x (i) - xAvg) * xDir +
+                                (coords.y (i) - yAvg) * yDir;
 
        //  Sort the locations by their position on the line.
 
-       Integer index [] = SortIndex.sort (projections);
-       int [] indexInt = new int [numPoints];
-       for (int i = 0; i < numPoints; i++)
-           indexInt[i] = index[i];
-       return indexInt;
+       if (isParallel)
+           return SortIndex.argsortParallel (projections);
+       return SortIndex.argsort (projections);
      }
 }
@@ -0,0 +1,109 @@
+/**
+ *  Order a line with another ordering algorithm after renumbering its
+ *  locations along a space-filling curve (see SpaceFillingCurve).
+ *
+ *  Locations are usually numbered in whatever order they appear in the SPS
+ *  file, so neighbouring locations can be far apart in the weights matrix,
+ *  and the MST and branch elimination then jump about memory. Renumbered,
+ *  a location's neighbours are mostly nearby rows and columns, which
+ *  makes better use of the processor caches on large lines.
+ *
+ *  The path found is mapped back to the original numbering. The last two
+ *  locations keep their numbers, so that the MST is rooted at the same
+ *  location and Segmenter.limit leaves out the same edge from its median.
+ *  The MST and segments are then the same as without renumbering, except
+ *  where ties are broken differently. So is the path from branch
+ *  elimination, but heuristics that search the segments in numbered order
+ *  (see SegmentShortHamPathHier) can settle on a slightly different path.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderRenumbered extends OrderLocns
+  {
+    private final OrderLocns order;
+    private SpaceFillingCurve.Curve curve = SpaceFillingCurve.Curve.Hilbert;
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public OrderRenumbered (OrderLocns order)
+      { this.order = order; }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    void setCurve (SpaceFillingCurve.Curve curve)
+      { this.curve = curve; }
+
+    @Override
+    public String signature ()
+      {
+        return super.signature () + " curve=" + curve +
+               " [" + order.signature () + "]";
+      }
+
+    @Override
+    void setPrint (boolean print)
+      {
+        super.setPrint (print);
+        order.setPrint (print);
+      }
+
+    @Override
+    void setStorage (Storage storage)
+      {
+        super.setStorage (storage);
+        order.setStorage (storage);
+      }
+
+    @Override
+    protected long memory (int n)
+      { return BYTES_PER_LOCATION * n + order.memory (n); }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public int [] path (CoordArray coords)
+      { return solve (coords).path (); }
+
+    @Override
+    public OrderResult solve (CoordArray coords)
+      {
+        int n = coords.length ();
+        if (n <= 2)
+            return order.solve (coords);
+
+        int renumber [] = renumber (coords);
+        OrderResult subResult = order.solve (coords.subset (renumber));
+        int subPath [] = subResult.path ();
+
+        int path [] = new int [n];
+        for (int i = 0; i < n; i++)
+            path[i] = renumber[subPath[i]];
+        OrderResult result = new OrderResult (path);
+        result.numSegments = subResult.numSegments ();
+        result.numClusters = subResult.numClusters ();
+        return result;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  renumber[i] is the original number of location i: the order along the
+    //  curve, except that locations n-2 and n-1 stay last.
+
+    int [] renumber (CoordArray coords)
+      {
+        int n = coords.length ();
+        int renumber [] = new int [n];
+        int m = 0;
+        for (int i : SpaceFillingCurve.order (coords, curve))
+            if (i < n-2)
+                renumber[m++] = i;
+        for (int i = Math.max (n-2, 0); i < n; i++)
+            renumber[m++] = i;
+        return renumber;
+      }
+  }
@@ -0,0 +1,52 @@
+/**
+ *  The result of ordering the locations within a line: the path itself plus
+ *  diagnostics describing how it was found.
+ *
+ *  The ordering classes keep no state between calls to "solve", so this is
+ *  the only place such diagnostics can be found. Values that don't apply to
+ *  an ordering algorithm are zero.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderResult
+{
+  private final int path [];
+  int numSegments = 0, numClusters = 0;
+  boolean stored = false;
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public OrderResult (int path [])
+    { this.path = path; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The ordering of the locations, as returned by OrderLocns.path.
+
+  public int [] path ()
+    { return path; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The number of segments connected by Segmented-SHP.
+
+  public int numSegments ()
+    { return numSegments; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The number of clusters the line was split into.
+
+  public int numClusters ()
+    { return numClusters; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  True if the path was taken from an OrderStore rather than found again.
+  //  The other diagnostics are then zero.
+
+  public boolean isStored ()
+    { return stored; }
+}
@@ -15,11 +15,18 @@
  *     2. Split the MST into unconnected paths called segments.
  *     3. Find the Shortest Hamiltonian Path connecting the segments.
  *
+ *  Normally the branching of the MST is first reduced so that there are not
+ *  too many segments to connect exactly. In hierarchical mode the MST is left
+ *  alone, and the segments are instead clustered and connected recursively
+ *  (see SegmentShortHamPathHier). This is better for lines with many
+ *  segments.
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
 
 package CrossSpreadOrder;
+import static CrossSpreadOrder.SystemCall.checkInterrupt;
 
 ///////////////////////////////////////////////////////////////////////////////
 
@@ -28,8 +35,26 @@ public class OrderSegmentSHP extends OrderLocns
    MinSpanTree mst = new MinSpanTreePrims ();
    Segmenter segmenter = new Segmenter ();
    SegmentShortHamPath shpSeg = new SegmentShortHamPath ();
+   SegmentShortHamPathHier shpHier = new SegmentShortHamPathHier ();
+
+   private int MaxBranching = 30;
+   private boolean hierarchical = false;
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  void setPrint (boolean print)
+    {
+      super.setPrint (print);
+      shpSeg.setPrint (print);
+      shpHier.setPrint (print);
+    }
 
-   private int MaxBranching = 30, numSegments = 0;
+  //////////////////////////////////////////////////////////////////////////////
+  //  The MST algorithm, such as MinSpanTreeParallel for very large lines.
+
+  void setMinSpanTree (MinSpanTree mst)
+    { this.mst = mst; }
 
   //////////////////////////////////////////////////////////////////////////////
   //  This is parameter "c". 2.5 is a good value.
@@ -47,46 +72,121 @@ public class OrderSegmentSHP extends OrderLocns
       this.MaxBranching = maxBranching;
     }
 
+  //////////////////////////////////////////////////////////////////////////////
+  //  Connect the segments hierarchically rather than reducing the branching.
+
+  void setHierarchical (boolean hierarchical)
+    { this.hierarchical = hierarchical; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  In hierarchical mode, the most segments that are connected exactly
+  //  at one time.
+
+  void setMaxClusterSize (int maxClusterSize)
+    { shpHier.setMaxClusterSize (maxClusterSize); }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public String signature ()
+    {
+      return super.signature () + " medianMult=" + segmenter.medianMult +
+             " maxBranching=" + MaxBranching + " hierarchical=" +
+             hierarchical + " maxClusterSize=" + shpHier.maxClusterSize () +
+             " mst=" + mst.getClass ().getName ();
+    }
+
   /////////////////////////////////////////////////////////////////////////////
 
   @Override
-  public int [] path (Coord coords [])
+  public int [] path (CoordArray coords)
+    { return solve (coords).path (); }
+
+  @Override
+  public OrderResult solve (CoordArray coords)
     {
-      Weights weights = new WeightsEuclid (coords);
-      return path (coords.length, weights);
+      Weights weights = weights (coords);
+      try
+        { return solve (coords.length (), weights, coords); }
+      finally
+        { release (weights); }
     }
 
   /////////////////////////////////////////////////////////////////////////////
 
   public int [] path (int n, Weights weights)
+    { return solve (n, weights).path (); }
+
+  public OrderResult solve (int n, Weights weights)
+    { return solve (n, weights, (CoordArray) null); }
+
+  //  "coords", if not null, are the locations whose distances the weights
+  //  are, which lets hierarchical mode cluster the segments faster.
+
+  private OrderResult solve (int n, Weights weights, CoordArray coords)
     {
       if (n <= 2)
         {
           int path [] = new int [n];
           for (int i = 0; i < n; i++)
               path[i] = i;
-          return path;
+          OrderResult result = new OrderResult (path);
+          result.numSegments = 1;
+          return result;
         }
 
       //  Calculate minimum spanning tree (MST)
 
-      int edges [] = mst.edges (n, weights);
+      return solve (n, weights, mst.edges (n, weights), coords);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Order the locations of a dynamic MST, reusing the tree. The path is
+  //  in terms of mst.coords ().
+
+  public OrderResult solve (MinSpanTreeDynamic mst)
+    {
+      CoordArray coords = mst.coords ();
+      Weights weights = weights (coords);
+      try
+        { return solve (coords.length (), weights, mst.edges (), coords); }
+      finally
+        { release (weights); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The same, but given the MST, such as one kept up to date as locations
+  //  are added (see OrderIncremental). The edges are modified.
+
+  public OrderResult solve (int n, Weights weights, int edges [])
+    { return solve (n, weights, edges, null); }
+
+  OrderResult solve (int n, Weights weights, int edges [], CoordArray coords)
+    {
+      assert edges.length == n - 1;
+      if (n <= 2)
+          return solve (n, weights);
 
       //  Reduce the branching degree of the MST if it's too large
       //  using the branch-elimination algorithm.
 
-      ShortHamPathBE shpBE = new ShortHamPathBE (weights);
-      shpBE.reduceBranching (edges, MaxBranching);
+      if (! hierarchical)
+        {
+          ShortHamPathBE shpBE = new ShortHamPathBE (weights);
+          shpBE.reduceBranching (edges, MaxBranching);
+        }
 
       //  Segment the MST.
 
+      checkInterrupt ();
       Segment segments [] = segmenter.segments (edges, weights);
-      numSegments = segments.length;
 
       //  Order the segments to minimize weight between terminals.
 
-      shpSeg.setPrint (print);
-      Segment orderedSegments [] = shpSeg.path (segments, weights);
+      checkInterrupt ();
+      Segment orderedSegments [] = hierarchical
+          ? shpHier.path (segments, weights, coords)
+          : shpSeg.path (segments, weights);
 
       //  Convert the ordered segments into a full vertex path.
 
@@ -98,15 +198,8 @@ public class OrderSegmentSHP extends OrderLocns
           start += orderedSegment.length ();
         }
       assert start == n;
-      return path;
-    }
-
-  /////////////////////////////////////////////////////////////////////////////
-  //  Called after "path" is called. This is for diagnostic purposes only.
-
-  int numSegments ()
-    {
-      assert numSegments >= 1;
-      return numSegments;
+      OrderResult result = new OrderResult (path);
+      result.numSegments = segments.length;
+      return result;
     }
 }
@@ -0,0 +1,26 @@
+/**
+ *  Somewhere to keep the paths of lines already ordered, keyed by line
+ *  fingerprint (see LineFingerprint), so that they need not be ordered
+ *  again. OrderBatch uses one to skip the lines a survey revision left
+ *  unchanged.
+ *
+ *  Implementations must be safe to use from many threads at once.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public interface OrderStore
+{
+  //  The path stored for this fingerprint, or null if there is none.
+
+  int [] get (long fingerprint);
+
+  //  Store a path, replacing any with the same fingerprint.
+
+  void put (long fingerprint, int path []);
+}
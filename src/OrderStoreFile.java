@@ -0,0 +1,562 @@
+/**
+ *  An OrderStore kept on disk, so that paths survive from one run to the
+ *  next and can be shared by several processes at once.
+ *
+ *  The store is two files. The data file ("name.dat") holds the paths,
+ *  appended one after another. Each is a record of
+ *
+ *     fingerprint   8-byte little-endian long
+ *     crc           4-byte little-endian CRC-32 of the rest of the record
+ *     n             varint
+ *     deltas        n varints, path[i] - path[i-1] (path[-1] = 0) zigzag
+ *                   encoded so that small negative steps are short too
+ *
+ *  Neighbouring positions in a path are usually near each other in number,
+ *  so most deltas take one or two bytes rather than four.
+ *
+ *  The index file ("name.idx") is mapped into memory and is an open
+ *  addressing hash table keyed by fingerprint, so a lookup reads one or two
+ *  slots and then one record. It has a 32-byte header of little-endian
+ *  values:
+ *
+ *     magic      int   0x4F535343 ("CSSO")
+ *     version    int   2
+ *     capacity   int   number of slots, a power of two
+ *     count      int   number of paths stored
+ *     clock      long  incremented on every use, for least-recently-used
+ *     liveBytes  long  total length of the records still indexed
+ *
+ *  followed by 32-byte slots of fingerprint (long), record offset (long,
+ *  zero if the slot is empty), time of last use (long) and record length
+ *  (int, then 4 bytes unused).
+ *
+ *  Replacing a path leaves its old record behind as garbage. Once there
+ *  is more garbage than live data, the data file is compacted in place by
+ *  sliding the live records down over it. Once the live data exceeds the
+ *  size limit, the least recently used paths are dropped until it is 10%
+ *  under.
+ *
+ *  Every operation holds an exclusive lock on the index file, so processes
+ *  sharing a store see each other's changes. As this is only a cache, a
+ *  crash while writing or compacting may lose paths, but never gives a
+ *  wrong one: a record is only used if its fingerprint and CRC match and
+ *  it holds exactly n deltas. A damaged or missing record, or any error
+ *  reading the files, is a cache miss.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderStoreFile implements OrderStore, AutoCloseable
+{
+  static final int magic = 0x4F535343, version = 2;
+  static final int dataMagic = 0x44535343;      //  "CSSD"
+  private static final int headerSize = 32, slotSize = 32, dataHeaderSize = 8,
+                           recordHeaderSize = 12;
+  private static final int initialCapacity = 1024;
+
+  //  Header offsets.
+
+  private static final int capacityAt = 8, countAt = 12, clockAt = 16,
+                           liveBytesAt = 24;
+
+  //  A JVM may not hold two locks on one file, so threads and stores
+  //  within a process first synchronize on a shared object per file.
+
+  private static final ConcurrentHashMap <Path, Object> processLocks =
+      new ConcurrentHashMap <> ();
+
+  private final FileChannel indexChannel, dataChannel;
+  private final Object processLock;
+  private final long maxBytes;
+  private MappedByteBuffer index = null;
+  private int capacity = 0;
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Open the store with the given base name, creating it if need be.
+  //  At most "maxBytes" of records are kept.
+
+  public static OrderStoreFile open (Path base, long maxBytes)
+      throws IOException
+    {
+      assert maxBytes > 0;
+      Path indexFile = base.resolveSibling (base.getFileName () + ".idx");
+      Path dataFile = base.resolveSibling (base.getFileName () + ".dat");
+      return new OrderStoreFile (indexFile, dataFile, maxBytes);
+    }
+
+  private OrderStoreFile (Path indexFile, Path dataFile, long maxBytes)
+      throws IOException
+    {
+      this.maxBytes = maxBytes;
+      indexChannel = FileChannel.open (indexFile, StandardOpenOption.CREATE,
+                                       StandardOpenOption.READ,
+                                       StandardOpenOption.WRITE);
+      dataChannel = FileChannel.open (dataFile, StandardOpenOption.CREATE,
+                                      StandardOpenOption.READ,
+                                      StandardOpenOption.WRITE);
+      processLock = processLocks.computeIfAbsent (
+          indexFile.toAbsolutePath ().normalize (), path -> new Object ());
+      try
+        { locked (() -> null); }
+      catch (UncheckedIOException e)
+        {
+          close ();
+          throw e.getCause ();
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  //  Returns null if the path is missing or cannot be read intact.
+
+  @Override
+  public int [] get (long fingerprint)
+    {
+      try
+        {
+          return locked (() ->
+            {
+              int slot = find (fingerprint);
+              if (slot < 0)
+                  return null;
+              int at = slotAt (slot);
+              index.putLong (at + 16, tick ());
+              long offset = index.getLong (at + 8);
+              int length = index.getInt (at + 24);
+              if (length < recordHeaderSize ||
+                  offset + length > dataChannel.size ())
+                  return null;
+              return decode (read (offset, length), fingerprint);
+            });
+        }
+      catch (UncheckedIOException e)
+        { return null; }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public void put (long fingerprint, int path [])
+    {
+      locked (() ->
+        {
+          ByteBuffer record = encode (fingerprint, path);
+          int length = record.remaining ();
+          long offset = dataChannel.size ();
+          while (record.hasRemaining ())
+              dataChannel.write (record, offset + record.position ());
+
+          int slot = find (fingerprint);
+          if (slot >= 0)
+              addLiveBytes (-index.getInt (slotAt (slot) + 24));
+          else
+            {
+              slot = -1 - slot;
+              index.putInt (countAt, index.getInt (countAt) + 1);
+            }
+          setSlot (slot, fingerprint, offset, tick (), length);
+          addLiveBytes (length);
+
+          if (index.getInt (countAt) > capacity / 2)
+              rebuild (2 * capacity, null);
+          if (index.getLong (liveBytesAt) > maxBytes)
+              evict ();
+          long garbage = dataChannel.size () - dataHeaderSize -
+                         index.getLong (liveBytesAt);
+          if (garbage > index.getLong (liveBytesAt) && garbage > 1 << 16)
+              compactData ();
+          return null;
+        });
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  public int size ()
+    { return locked (() -> index.getInt (countAt)); }
+
+  //  The total length of the records still indexed.
+
+  public long liveBytes ()
+    { return locked (() -> index.getLong (liveBytesAt)); }
+
+  //  The length of the data file, including garbage.
+
+  public long fileBytes ()
+    { return locked (() -> dataChannel.size ()); }
+
+  //  Remove the garbage from the data file now.
+
+  public void compact ()
+    {
+      locked (() ->
+        {
+          compactData ();
+          return null;
+        });
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public void close () throws IOException
+    {
+      index = null;
+      try
+        { indexChannel.close (); }
+      finally
+        { dataChannel.close (); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Run an action holding both the process and the file lock, after
+  //  bringing the mapping of the index up to date.
+
+  private interface Action <T>
+    {
+      T run () throws IOException;
+    }
+
+  private <T> T locked (Action <T> action)
+    {
+      synchronized (processLock)
+        {
+          try
+            {
+              FileLock lock = indexChannel.lock ();
+              try
+                {
+                  if (indexChannel.size () == 0)
+                      create ();
+                  if (index == null || index.getInt (capacityAt) != capacity)
+                      map ();
+                  return action.run ();
+                }
+              finally
+                { lock.release (); }
+            }
+          catch (IOException e)
+            { throw new UncheckedIOException (e); }
+        }
+    }
+
+  private void create () throws IOException
+    {
+      ByteBuffer header = ByteBuffer.allocate (dataHeaderSize)
+                                    .order (ByteOrder.LITTLE_ENDIAN);
+      header.putInt (dataMagic).putInt (version).flip ();
+      dataChannel.truncate (0);
+      while (header.hasRemaining ())
+          dataChannel.write (header, header.position ());
+
+      header = ByteBuffer.allocate (headerSize).order (ByteOrder.LITTLE_ENDIAN);
+      header.putInt (magic).putInt (version).putInt (initialCapacity)
+            .putInt (0).putLong (0).putLong (0).flip ();
+      while (header.hasRemaining ())
+          indexChannel.write (header, header.position ());
+      extend (initialCapacity);
+    }
+
+  private void map () throws IOException
+    {
+      ByteBuffer header = ByteBuffer.allocate (headerSize)
+                                    .order (ByteOrder.LITTLE_ENDIAN);
+      while (header.hasRemaining ())
+          if (indexChannel.read (header, header.position ()) < 0)
+              throw new IOException ("Order store index is truncated");
+      header.flip ();
+      if (header.getInt () != magic)
+          throw new IOException ("Not an order store index");
+      if (header.getInt () != version)
+          throw new IOException ("Unsupported order store version");
+      capacity = header.getInt ();
+      if (Integer.bitCount (capacity) != 1 ||
+          indexChannel.size () < headerSize + (long) slotSize * capacity)
+          throw new IOException ("Bad order store index header");
+
+      index = indexChannel.map (FileChannel.MapMode.READ_WRITE, 0,
+                                headerSize + (long) slotSize * capacity);
+      index.order (ByteOrder.LITTLE_ENDIAN);
+    }
+
+  //  Make the index file long enough for this many slots.
+
+  private void extend (int slots) throws IOException
+    {
+      long size = headerSize + (long) slotSize * slots;
+      if (indexChannel.size () < size)
+          indexChannel.write (ByteBuffer.allocate (1), size - 1);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The slot holding this fingerprint, or -1 - (the empty slot where it
+  //  would go).
+
+  private int find (long fingerprint)
+    {
+      int mask = capacity - 1;
+      for (int slot = (int) mix (fingerprint) & mask; ;
+           slot = (slot + 1) & mask)
+        {
+          int at = slotAt (slot);
+          if (index.getLong (at + 8) == 0)
+              return -1 - slot;
+          if (index.getLong (at) == fingerprint)
+              return slot;
+        }
+    }
+
+  private static int slotAt (int slot)
+    { return headerSize + slotSize * slot; }
+
+  private void setSlot (int slot, long fingerprint, long offset,
+                        long lastUsed, int length)
+    {
+      int at = slotAt (slot);
+      index.putLong (at, fingerprint);
+      index.putLong (at + 8, offset);
+      index.putLong (at + 16, lastUsed);
+      index.putInt (at + 24, length);
+    }
+
+  private long tick ()
+    {
+      long clock = index.getLong (clockAt) + 1;
+      index.putLong (clockAt, clock);
+      return clock;
+    }
+
+  private void addLiveBytes (long bytes)
+    { index.putLong (liveBytesAt, index.getLong (liveBytesAt) + bytes); }
+
+  //  Spread the bits of the fingerprint (the MurmurHash3 finalizer).
+
+  private static long mix (long key)
+    {
+      key ^= key >>> 33;
+      key *= 0xff51afd7ed558ccdL;
+      key ^= key >>> 33;
+      key *= 0xc4ceb9fe1a85ec53L;
+      key ^= key >>> 33;
+      return key;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Every indexed slot, in the order they lie in the table.
+
+  private int [] usedSlots ()
+    {
+      int slots [] = new int [index.getInt (countAt)];
+      int m = 0;
+      for (int slot = 0; slot < capacity; slot++)
+          if (index.getLong (slotAt (slot) + 8) != 0)
+              slots[m++] = slot;
+      assert m == slots.length;
+      return slots;
+    }
+
+  //  Rebuild the table with a new capacity, leaving out the slots marked
+  //  in "drop" (which may be null).
+
+  private void rebuild (int newCapacity, boolean drop [])
+      throws IOException
+    {
+      int slots [] = usedSlots ();
+      int m = slots.length;
+      long fingerprints [] = new long [m], offsets [] = new long [m],
+           lastUsed [] = new long [m];
+      int lengths [] = new int [m];
+      for (int k = 0; k < m; k++)
+        {
+          int at = slotAt (slots[k]);
+          fingerprints[k] = index.getLong (at);
+          offsets[k] = index.getLong (at + 8);
+          lastUsed[k] = index.getLong (at + 16);
+          lengths[k] = index.getInt (at + 24);
+        }
+
+      if (newCapacity != capacity)
+        {
+          extend (newCapacity);
+          index.putInt (capacityAt, newCapacity);
+          map ();
+        }
+      for (int slot = 0; slot < capacity; slot++)
+          index.putLong (slotAt (slot) + 8, 0);
+
+      int count = 0;
+      long liveBytes = 0;
+      for (int k = 0; k < m; k++)
+          if (drop == null || ! drop[slots[k]])
+            {
+              int slot = -1 - find (fingerprints[k]);
+              setSlot (slot, fingerprints[k], offsets[k], lastUsed[k],
+                       lengths[k]);
+              count++;
+              liveBytes += lengths[k];
+            }
+      index.putInt (countAt, count);
+      index.putLong (liveBytesAt, liveBytes);
+    }
+
+  //  Drop the least recently used paths until the live data is 10% under
+  //  the limit.
+
+  private void evict () throws IOException
+    {
+      int slots [] = usedSlots ();
+      Integer order [] = new Integer [slots.length];
+      for (int k = 0; k < slots.length; k++)
+          order[k] = slots[k];
+      Arrays.sort (order, (a, b) -> Long.compare (
+          index.getLong (slotAt (a) + 16), index.getLong (slotAt (b) + 16)));
+
+      boolean drop [] = new boolean [capacity];
+      long liveBytes = index.getLong (liveBytesAt);
+      for (int k = 0; k < order.length && liveBytes > 0.9 * maxBytes; k++)
+        {
+          drop[order[k]] = true;
+          liveBytes -= index.getInt (slotAt (order[k]) + 24);
+        }
+      rebuild (capacity, drop);
+    }
+
+  //  Slide the live records down over the garbage, in file order.
+
+  private void compactData () throws IOException
+    {
+      int slots [] = usedSlots ();
+      long offsets [] = new long [slots.length];
+      for (int k = 0; k < slots.length; k++)
+          offsets[k] = index.getLong (slotAt (slots[k]) + 8);
+      Integer order [] = new Integer [slots.length];
+      for (int k = 0; k < slots.length; k++)
+          order[k] = k;
+      Arrays.sort (order, (a, b) -> Long.compare (offsets[a], offsets[b]));
+
+      long end = dataHeaderSize;
+      for (int k : order)
+        {
+          int at = slotAt (slots[k]);
+          int length = index.getInt (at + 24);
+          if (offsets[k] != end)
+            {
+              ByteBuffer record = read (offsets[k], length);
+              while (record.hasRemaining ())
+                  dataChannel.write (record, end + record.position ());
+              index.putLong (at + 8, end);
+            }
+          end += length;
+        }
+      dataChannel.truncate (end);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Records.
+
+  private ByteBuffer read (long offset, int length) throws IOException
+    {
+      ByteBuffer buffer = ByteBuffer.allocate (length)
+                                    .order (ByteOrder.LITTLE_ENDIAN);
+      while (buffer.hasRemaining ())
+          if (dataChannel.read (buffer, offset + buffer.position ()) < 0)
+              throw new IOException ("Order store data is truncated");
+      buffer.flip ();
+      return buffer;
+    }
+
+  static ByteBuffer encode (long fingerprint, int path [])
+    {
+      ByteBuffer buffer = ByteBuffer.allocate (recordHeaderSize +
+                                               5 * (path.length + 1))
+                                    .order (ByteOrder.LITTLE_ENDIAN);
+      buffer.putLong (fingerprint).putInt (0);
+      putVarint (buffer, path.length);
+      int previous = 0;
+      for (int p : path)
+        {
+          int delta = p - previous;
+          putVarint (buffer, (delta << 1) ^ (delta >> 31));
+          previous = p;
+        }
+      buffer.flip ();
+      buffer.putInt (8, crc (buffer));
+      return buffer;
+    }
+
+  //  Returns null if the record is not for this fingerprint or is damaged.
+
+  static int [] decode (ByteBuffer buffer, long fingerprint)
+    {
+      try
+        {
+          if (buffer.getLong (0) != fingerprint ||
+              buffer.getInt (8) != crc (buffer))
+              return null;
+          buffer.position (recordHeaderSize);
+          int n = getVarint (buffer);
+          if (n < 0 || n > buffer.remaining ())
+              return null;
+          int path [] = new int [n];
+          int previous = 0;
+          for (int i = 0; i < n; i++)
+            {
+              int zigzag = getVarint (buffer);
+              previous += (zigzag >>> 1) ^ -(zigzag & 1);
+              path[i] = previous;
+            }
+          return buffer.hasRemaining () ? null : path;
+        }
+      catch (IndexOutOfBoundsException | BufferUnderflowException e)
+        { return null; }
+    }
+
+  //  The CRC-32 of everything in the record after the header.
+
+  private static int crc (ByteBuffer record)
+    {
+      CRC32 crc = new CRC32 ();
+      crc.update (record.duplicate ().position (recordHeaderSize));
+      return (int) crc.getValue ();
+    }
+
+  private static void putVarint (ByteBuffer buffer, int value)
+    {
+      while ((value & ~0x7F) != 0)
+        {
+          buffer.put ((byte) ((value & 0x7F) | 0x80));
+          value >>>= 7;
+        }
+      buffer.put ((byte) value);
+    }
+
+  private static int getVarint (ByteBuffer buffer)
+    {
+      int value = 0;
+      for (int shift = 0; ; shift += 7)
+        {
+          byte b = buffer.get ();
+          value |= (b & 0x7F) << shift;
+          if (b >= 0)
+              return value;
+        }
+    }
+}
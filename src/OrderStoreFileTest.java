@@ -0,0 +1,281 @@
+/**
+ *  Unit test for OrderStoreFile.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class OrderStoreFileTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Paths must come back as they were put, from the same store and from
+  //  a second one opened on the same files, through growth of the index,
+  //  replacement and compaction.
+
+  @Test
+  public void roundTrip () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4701);
+      Path dir = Files.createTempDirectory ("orderstore");
+      Path base = dir.resolve ("store");
+      HashMap <Long, int []> expected = new HashMap <> ();
+      try
+        {
+          try (OrderStoreFile store1 = OrderStoreFile.open (base, 1L << 30);
+               OrderStoreFile store2 = OrderStoreFile.open (base, 1L << 30))
+            {
+              long rawBytes = 0;
+              for (int k = 0; k < 3000; k++)
+                {
+                  long fingerprint = rand.nextLong ();
+                  int path [] = randomPath (rand, rand.nextInt (200));
+                  (k % 2 == 0 ? store1 : store2).put (fingerprint, path);
+                  expected.put (fingerprint, path);
+                  rawBytes += 4 * path.length;
+                }
+              assertEquals (expected.size (), store1.size ());
+              printf ("   %d paths, %d bytes stored, %d bytes as int%n",
+                      store2.size (), store2.liveBytes (), rawBytes);
+              assertTrue (store1.liveBytes () < rawBytes / 2);
+              check (store1, expected);
+              check (store2, expected);
+              assertTrue (store1.get (12345L) == null);
+
+              //  Replace most paths, then compact.
+
+              for (long fingerprint : expected.keySet ())
+                  if (rand.nextInt (4) != 0)
+                    {
+                      int path [] = randomPath (rand, rand.nextInt (200));
+                      store2.put (fingerprint, path);
+                      expected.put (fingerprint, path);
+                    }
+              check (store1, expected);
+              store1.compact ();
+              assertEquals (store1.liveBytes () + 8, store2.fileBytes ());
+              check (store2, expected);
+            }
+
+          //  Reopen.
+
+          try (OrderStoreFile store = OrderStoreFile.open (base, 1L << 30))
+            {
+              assertEquals (expected.size (), store.size ());
+              check (store, expected);
+            }
+
+          //  A file that is not a store must be rejected.
+
+          Path other = dir.resolve ("other");
+          Files.write (dir.resolve ("other.idx"), new byte [40]);
+          boolean thrown = false;
+          try
+            { OrderStoreFile.open (other, 1L << 30).close (); }
+          catch (IOException e)
+            { thrown = true; }
+          assertTrue (thrown);
+        }
+      finally
+        { delete (dir); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A store too small for everything must keep the most recently used
+  //  paths and stay within its limit, on disk too.
+
+  @Test
+  public void evict () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4702);
+      Path dir = Files.createTempDirectory ("orderstore");
+      long maxBytes = 200000;
+      try (OrderStoreFile store = OrderStoreFile.open (dir.resolve ("store"),
+                                                       maxBytes))
+        {
+          int path [] = randomPath (rand, 100);
+          long often = -1;
+          store.put (often, path);
+          for (long fingerprint = 0; fingerprint < 20000; fingerprint++)
+            {
+              store.put (fingerprint, randomPath (rand, 100));
+              assertArrayEquals (path, store.get (often));
+              assertTrue (store.liveBytes () <= maxBytes);
+            }
+          printf ("   %d paths kept, %d bytes live, %d bytes in file%n%n",
+                  store.size (), store.liveBytes (), store.fileBytes ());
+          assertTrue (store.fileBytes () <= 3 * maxBytes);
+          assertTrue (store.get (0) == null);
+          assertTrue (store.get (19999) != null);
+        }
+      finally
+        { delete (dir); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Damaged records, from a torn write at the end of the data file or a
+  //  corrupted byte in the middle, must be misses rather than wrong paths
+  //  or exceptions.
+
+  @Test
+  public void damaged () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4704);
+      Path dir = Files.createTempDirectory ("orderstore");
+      Path base = dir.resolve ("store"), data = dir.resolve ("store.dat");
+      HashMap <Long, int []> expected = new HashMap <> ();
+      try
+        {
+          long last = 0;
+          try (OrderStoreFile store = OrderStoreFile.open (base, 1L << 30))
+            {
+              for (int k = 0; k < 200; k++)
+                {
+                  last = rand.nextLong ();
+                  int path [] = randomPath (rand, 20 + rand.nextInt (200));
+                  store.put (last, path);
+                  expected.put (last, path);
+                }
+            }
+
+          byte bytes [] = Files.readAllBytes (data);
+          Files.write (data, Arrays.copyOf (bytes, bytes.length - 50));
+          bytes[bytes.length / 2] ^= 0x10;
+          int numMisses = 0;
+          for (int pass = 0; pass < 2; pass++)
+            {
+              try (OrderStoreFile store = OrderStoreFile.open (base, 1L << 30))
+                {
+                  numMisses = 0;
+                  for (long fingerprint : expected.keySet ())
+                    {
+                      int path [] = store.get (fingerprint);
+                      if (path == null)
+                          numMisses++;
+                      else
+                          assertArrayEquals (expected.get (fingerprint), path);
+                    }
+                  if (pass == 0)
+                      assertTrue (store.get (last) == null);
+                  assertTrue (numMisses >= 1 && numMisses <= 2);
+
+                  //  A new path replaces a damaged one.
+
+                  store.put (last, expected.get (last));
+                  assertArrayEquals (expected.get (last), store.get (last));
+                }
+              Files.write (data, bytes);
+            }
+        }
+      finally
+        { delete (dir); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A batch run again with a new store on the same files must reuse every
+  //  path.
+
+  @Test
+  public void batch () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4703);
+      Coord lines [] [] = new Coord [50] [];
+      for (int line = 0; line < lines.length; line++)
+        {
+          lines[line] = new Coord [2 + rand.nextInt (60)];
+          for (int i = 0; i < lines[line].length; i++)
+              lines[line][i] = new Coord (100 * rand.nextFloat (),
+                                          rand.nextFloat ());
+        }
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      Path dir = Files.createTempDirectory ("orderstore");
+      try
+        {
+          OrderResult first [];
+          try (OrderStoreFile store = OrderStoreFile.open (dir.resolve ("s"),
+                                                           1L << 20))
+            {
+              OrderBatch batch = new OrderBatch (order);
+              batch.setStore (store);
+              first = batch.run (lines);
+            }
+          try (OrderStoreFile store = OrderStoreFile.open (dir.resolve ("s"),
+                                                           1L << 20))
+            {
+              OrderBatch batch = new OrderBatch (order);
+              batch.setStore (store);
+              OrderResult second [] = batch.run (lines);
+              for (int line = 0; line < lines.length; line++)
+                {
+                  assertTrue (second[line].isStored ());
+                  assertArrayEquals (first[line].path (),
+                                     second[line].path ());
+                }
+            }
+        }
+      finally
+        { delete (dir); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static void check (OrderStoreFile store,
+                             HashMap <Long, int []> expected)
+    {
+      for (long fingerprint : expected.keySet ())
+          assertArrayEquals (expected.get (fingerprint),
+                             store.get (fingerprint));
+    }
+
+  private static int [] randomPath (Random rand, int n)
+    {
+      int path [] = new int [n];
+      for (int i = 0; i < n; i++)
+          path[i] = i;
+      for (int i = n - 1; i > 0; i--)
+          if (rand.nextInt (4) == 0)
+            {
+              int j = rand.nextInt (i + 1);
+              int t = path[i];
+              path[i] = path[j];
+              path[j] = t;
+            }
+      return path;
+    }
+
+  private static void delete (Path dir) throws IOException
+    {
+      try (var files = Files.list (dir))
+        {
+          for (Path file : (Iterable <Path>) files::iterator)
+              Files.delete (file);
+        }
+      Files.delete (dir);
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ *  An OrderStore held in memory, lasting as long as the object.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class OrderStoreMemory implements OrderStore
+{
+  private final ConcurrentHashMap <Long, int []> paths =
+      new ConcurrentHashMap <> ();
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public int [] get (long fingerprint)
+    {
+      int path [] = paths.get (fingerprint);
+      return path == null ? null : path.clone ();
+    }
+
+  @Override
+  public void put (long fingerprint, int path [])
+    { paths.put (fingerprint, path.clone ()); }
+
+  public int size ()
+    { return paths.size (); }
+}
@@ -25,7 +25,7 @@ import static CrossSpreadOrder.Print.printf;
 
 public class SegmentShortHamPath
 {
-  private boolean print = false;
+  protected boolean print = false;
 
   //////////////////////////////////////////////////////////////////////////////
 
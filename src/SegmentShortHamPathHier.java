@@ -0,0 +1,467 @@
+/*
+ *  Find a short path through a list of segments when there are too many
+ *  segments to solve the Shortest Hamiltonian Path problem exactly.
+ *
+ *  This works hierarchically:
+ *
+ *     1. Cluster the segments spatially into groups of no more than
+ *        "maxClusterSize" segments each.
+ *     2. Order the segments within each cluster exactly using
+ *        SegmentShortHamPath, and join them into a single segment.
+ *     3. Repeat on the joined segments until few enough remain to be
+ *        ordered exactly.
+ *     4. Improve the final order of the original segments with 2-opt moves,
+ *        which reverse a run of consecutive segments. This repairs the
+ *        poor joins that come from ordering each cluster without knowing
+ *        its neighbours, so only runs of a few clusters' length are tried,
+ *        for a limited number of passes.
+ *
+ *  The clusters are formed by building the minimum spanning tree of the
+ *  segments, where the weight between two segments is the least weight
+ *  between their terminals, and then partitioning the tree from the leaves
+ *  upwards. Each level reduces the number of segments by roughly a factor of
+ *  maxClusterSize, so the number of exact searches grows linearly with the
+ *  number of segments m, as does the 2-opt.
+ *
+ *  Given the coordinates that the weights are distances between, the
+ *  segment MST is found from the MST of the segment terminals, using a
+ *  spatial grid (see MinSpanTreeSpatial), in about O(m log m) time. Given
+ *  only weights, every pair of segments is examined, which takes O(m**2).
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+
+import java.util.Arrays;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class SegmentShortHamPathHier extends SegmentShortHamPath
+{
+  private int maxClusterSize = 12;
+  MinSpanTree mst = new MinSpanTreePrims ();
+  MinSpanTree spatialMst = new MinSpanTreeSpatial ();
+
+  //  2-opt reverses runs of at most this many clusters' worth of segments,
+  //  in at most this many passes.
+
+  private static final int TWO_OPT_CLUSTERS = 4, TWO_OPT_PASSES = 10;
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The most segments that will be ordered exactly at one time.
+
+  int maxClusterSize ()
+    { return maxClusterSize; }
+
+  void setMaxClusterSize (int maxClusterSize)
+    {
+      assert maxClusterSize >= 2;
+      this.maxClusterSize = maxClusterSize;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  @Override
+  public Segment [] path (Segment segments [], Weights weights)
+    { return path (segments, weights, null); }
+
+  //  "coords", if not null, are the locations whose distances the weights
+  //  are (as CoordArray.distanceHypot).
+
+  public Segment [] path (Segment segments [], Weights weights,
+                          CoordArray coords)
+    {
+      int numSegs = segments.length;
+      if (numSegs <= maxClusterSize)
+          return super.path (segments, weights);
+
+      //  Order the segments hierarchically, then flatten the hierarchy
+      //  back into the original segments and improve the order.
+
+      Segment ordered [] = new Segment [numSegs];
+      int count = 0;
+      for (Segment segment : hierarchicalPath (segments, weights, coords))
+          count = flatten (segment, false, ordered, count);
+      assert count == numSegs;
+      twoOpt (ordered, weights, TWO_OPT_CLUSTERS * maxClusterSize,
+              TWO_OPT_PASSES);
+      return ordered;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  private Segment [] hierarchicalPath (Segment segments [], Weights weights,
+                                       CoordArray coords)
+    {
+      int numSegs = segments.length;
+      if (numSegs <= maxClusterSize)
+          return super.path (segments, weights);
+
+      //  Cluster the segments spatially.
+
+      int clusters [] [] = cluster (segments, weights, coords);
+      if (print)
+          printf ("Hierarchical SHP: %d segments in %d clusters%n%n",
+                  numSegs, clusters.length);
+      assert clusters.length < numSegs;
+
+      //  Order the segments within each cluster exactly and join them.
+
+      Segment joined [] = new Segment [clusters.length];
+      for (int c = 0; c < clusters.length; c++)
+        {
+          Segment members [] = new Segment [clusters[c].length];
+          for (int i = 0; i < members.length; i++)
+              members[i] = segments[clusters[c][i]];
+          joined[c] = new SegmentGroup (super.path (members, weights));
+        }
+
+      //  Order the clusters in turn.
+
+      return hierarchicalPath (joined, weights, coords);
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Expand a segment into the original segments it is made up of, orienting
+  //  them so that they are loaded in the same order as the whole.
+
+  private static int flatten (Segment segment, boolean reverse,
+                              Segment ordered [], int count)
+    {
+      if (! (segment instanceof SegmentGroup))
+        {
+          if (reverse)
+              segment.reverse ();
+          ordered[count++] = segment;
+          return count;
+        }
+
+      SegmentGroup group = (SegmentGroup) segment;
+      reverse ^= group.reverse;
+      int m = group.members.length;
+      for (int i = 0; i < m; i++)
+          count = flatten (group.members[reverse ? m-1-i : i], reverse,
+                           ordered, count);
+      return count;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Reverse the run of segments ordered[i] ... ordered[j] if it shortens
+  //  the path, for runs of at most "window" segments, until no such
+  //  improvement remains or after "maxPasses" passes.
+
+  static void twoOpt (Segment ordered [], Weights weights, int window,
+                      int maxPasses)
+    {
+      int m = ordered.length;
+      boolean improved = true;
+      for (int pass = 0; improved && pass < maxPasses; pass++)
+        {
+          improved = false;
+          for (int i = 0; i < m-1; i++)
+          for (int j = i+1; j < m && j < i + window; j++)
+            {
+              int a = i > 0 ? ordered[i-1].end () : -1;
+              int b = ordered[i].start ();
+              int c = ordered[j].end ();
+              int d = j < m-1 ? ordered[j+1].start () : -1;
+              float removed = 0, added = 0;
+              if (a >= 0)
+                {
+                  removed += weights.value (a, b);
+                  added += weights.value (a, c);
+                }
+              if (d >= 0)
+                {
+                  removed += weights.value (c, d);
+                  added += weights.value (b, d);
+                }
+              if (added >= (1 - 1E-5F) * removed)    //  Avoid cycling
+                  continue;
+
+              for (int k = i, l = j; k < l; k++, l--)
+                {
+                  Segment t = ordered[k];
+                  ordered[k] = ordered[l];
+                  ordered[l] = t;
+                }
+              for (int k = i; k <= j; k++)
+                  ordered[k].reverse ();
+              improved = true;
+            }
+        }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Partition the segments into clusters of at most maxClusterSize segments.
+  //  Returns the segment indices of each cluster.
+
+  int [] [] cluster (Segment segments [], Weights weights)
+    { return cluster (segments, weights, null); }
+
+  int [] [] cluster (Segment segments [], Weights weights, CoordArray coords)
+    {
+      int numSegs = segments.length;
+      int parent [] = coords == null
+          ? mst.edges (numSegs, new WeightsSegments (segments, weights))
+          : segmentTree (segments, coords);
+
+      //  The MST is rooted at the last segment. List the segments so that
+      //  every parent comes before its children.
+
+      int numChildren [] = new int [numSegs+1];
+      for (int i = 0; i < numSegs-1; i++)
+          numChildren[parent[i]+1] ++;
+      for (int i = 0; i < numSegs; i++)
+          numChildren[i+1] += numChildren[i];
+      int firstChild [] = numChildren.clone ();
+      int children [] = new int [numSegs-1];
+      for (int i = 0; i < numSegs-1; i++)
+          children[firstChild[parent[i]]++] = i;
+      int order [] = new int [numSegs];
+      order[0] = numSegs - 1;
+      for (int head = 0, tail = 1; head < numSegs; head++)
+          for (int k = numChildren[order[head]];
+               k < numChildren[order[head]+1]; k++)
+              order[tail++] = children[k];
+
+      //  Working from the leaves upwards, grow a cluster below every vertex.
+      //  When a cluster would exceed the maximum size, cut off its largest
+      //  subtrees and pack them into clusters of their own.
+
+      int size [] = new int [numSegs];
+      int bin [] = new int [numSegs];
+      Arrays.fill (bin, -1);
+      int numClusters = 0;
+      for (int k = numSegs-1; k >= 0; k--)
+        {
+          int v = order[k];
+          int first = numChildren[v], last = numChildren[v+1];
+          size[v] = 1;
+          for (int c = first; c < last; c++)
+              size[v] += size[children[c]];
+          if (size[v] <= maxClusterSize)
+              continue;
+
+          //  Keep the largest children that fit, and bin the rest using
+          //  first-fit decreasing.
+
+          int sorted [] = sortBySize (children, first, last, size);
+          int binSizes [] = new int [sorted.length];
+          int firstBin = numClusters;
+          size[v] = 1;
+          for (int c : sorted)
+            {
+              if (size[v] + size[c] <= maxClusterSize)
+                {
+                  size[v] += size[c];
+                  continue;
+                }
+              int b = firstBin;
+              while (b < numClusters &&
+                     binSizes[b-firstBin] + size[c] > maxClusterSize)
+                  b++;
+              if (b == numClusters)
+                  numClusters++;
+              binSizes[b-firstBin] += size[c];
+              bin[c] = b;
+            }
+        }
+      int rootCluster = numClusters++;
+
+      //  Assign every segment to a cluster, working from the root downwards.
+
+      int cluster [] = new int [numSegs];
+      int clusterSize [] = new int [numClusters];
+      for (int v : order)
+        {
+          if (v == numSegs-1)
+              cluster[v] = rootCluster;
+          else if (bin[v] >= 0)
+              cluster[v] = bin[v];
+          else
+              cluster[v] = cluster[parent[v]];
+          clusterSize[cluster[v]] ++;
+        }
+      int clusters [] [] = new int [numClusters] [];
+      for (int c = 0; c < numClusters; c++)
+        {
+          assert clusterSize[c] > 0 && clusterSize[c] <= maxClusterSize;
+          clusters[c] = new int [clusterSize[c]];
+          clusterSize[c] = 0;
+        }
+      for (int i = 0; i < numSegs; i++)
+          clusters[cluster[i]][clusterSize[cluster[i]]++] = i;
+      return clusters;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The segment MST, rooted at the last segment as MinSpanTree.edges is,
+  //  found from the MST of the 2m segment terminals. Think of each segment's
+  //  two terminals as joined by an edge of weight zero. Every other edge
+  //  between terminals that is not in the terminal MST is the longest on
+  //  some cycle of MST edges, so it is never needed. Kruskal's algorithm over
+  //  the terminal MST edges therefore gives the segment MST.
+
+  private int [] segmentTree (Segment segments [], CoordArray coords)
+    {
+      int numSegs = segments.length;
+      CoordArrayFloat terminals = new CoordArrayFloat (2 * numSegs);
+      for (int s = 0; s < numSegs; s++)
+        {
+          int start = segments[s].start (), end = segments[s].end ();
+          terminals.set (2*s, coords.x (start), coords.y (start));
+          terminals.set (2*s+1, coords.x (end), coords.y (end));
+        }
+      int tree [] = spatialMst.edges (terminals);
+      float lengths [] = new float [tree.length];
+      for (int t = 0; t < tree.length; t++)
+          lengths[t] = terminals.distanceHypot (t, tree[t]);
+
+      int root [] = new int [numSegs];
+      for (int s = 0; s < numSegs; s++)
+          root[s] = s;
+      int a [] = new int [numSegs-1], b [] = new int [numSegs-1];
+      int numEdges = 0;
+      for (int t : SortIndex.argsort (lengths))
+        {
+          int sa = find (root, t / 2), sb = find (root, tree[t] / 2);
+          if (sa != sb)
+            {
+              root[sa] = sb;
+              a[numEdges] = t / 2;
+              b[numEdges++] = tree[t] / 2;
+            }
+        }
+      assert numEdges == numSegs - 1;
+      return GraphUtil.edges (numSegs, a, b);
+    }
+
+  private static int find (int root [], int i)
+    {
+      while (root[i] != i)
+        {
+          root[i] = root[root[i]];
+          i = root[i];
+        }
+      return i;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Return children[first] ... children[last-1] sorted by decreasing size.
+
+  private static int [] sortBySize (int children [], int first, int last,
+                                    int size [])
+    {
+      int m = last - first;
+      int keys [] = new int [m];
+      for (int i = 0; i < m; i++)
+          keys[i] = -size[children[first+i]];
+      int index [] = SortIndex.argsort (keys);
+      int sorted [] = new int [m];
+      for (int i = 0; i < m; i++)
+          sorted[i] = children[first+index[i]];
+      return sorted;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  A cluster of ordered segments treated as a single segment.
+
+  private static class SegmentGroup extends Segment
+    {
+      private final Segment members [];
+      private final int length;
+      private boolean reverse = false;
+
+      SegmentGroup (Segment members [])
+        {
+          this.members = members;
+          int length = 0;
+          for (Segment member : members)
+              length += member.length ();
+          this.length = length;
+        }
+
+      @Override
+      public int start ()
+        {
+          return reverse ? members[members.length-1].end ()
+                         : members[0].start ();
+        }
+
+      @Override
+      public int end ()
+        {
+          return reverse ? members[0].start ()
+                         : members[members.length-1].end ();
+        }
+
+      @Override
+      public void reverse ()
+        { reverse = ! reverse; }
+
+      @Override
+      public int length ()
+        { return length; }
+
+      @Override
+      public void load (int vertices [], int start)
+        {
+          int forward [] = new int [length];
+          int posn = 0;
+          for (Segment member : members)
+            {
+              member.load (forward, posn);
+              posn += member.length ();
+            }
+          for (int i = 0; i < length; i++)
+              vertices[start+i] = forward[reverse ? length-1-i : i];
+        }
+
+      @Override
+      public int index (int i)
+        {
+          assert i >= 0 && i < length;
+          if (reverse)
+              i = length - 1 - i;
+          for (Segment member : members)
+            {
+              if (i < member.length ())
+                  return member.index (i);
+              i -= member.length ();
+            }
+          return -1;
+        }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The weight between two segments is the least weight between any of
+  //  their terminals.
+
+  private static class WeightsSegments extends Weights
+    {
+      private final Segment segments [];
+      private final Weights weights;
+
+      WeightsSegments (Segment segments [], Weights weights)
+        {
+          this.segments = segments;
+          this.weights = weights;
+          setSymmetric (weights.isSymmetric ());
+        }
+
+      @Override
+      public float value (int i, int j)
+        {
+          int si = segments[i].start (), ei = segments[i].end (),
+              sj = segments[j].start (), ej = segments[j].end ();
+          return Math.min (Math.min (weights.value (si, sj),
+                                     weights.value (si, ej)),
+                           Math.min (weights.value (ei, sj),
+                                     weights.value (ei, ej)));
+        }
+    }
+}
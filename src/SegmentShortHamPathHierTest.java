@@ -0,0 +1,224 @@
+/**
+ *  Unit test for SegmentShortHamPathHier.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
+import static CrossSpreadOrder.GraphUtil.pathWeight;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class SegmentShortHamPathHierTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  With few segments the hierarchical method is exact.
+
+  @Test
+  public void fewSegments ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (812);
+      MinSpanTree mst = new MinSpanTreePrims ();
+      Segmenter segmenter = new Segmenter ();
+      for (int test = 0; test < 100; test++)
+        {
+          int n = 3 + rand.nextInt (20);
+          Coord coords [] = scatter (rand, n);
+          Weights weights = new WeightsEuclid (coords);
+          int edges [] = mst.edges (n, weights);
+
+          Segment segments [] = segmenter.segments (edges, weights);
+          if (segments.length > 8)
+              continue;
+          float weight1 = segmentsWeight (weights, n,
+              new SegmentShortHamPath ().path (segments, weights));
+
+          segments = segmenter.segments (edges, weights);
+          SegmentShortHamPathHier hier = new SegmentShortHamPathHier ();
+          hier.setMaxClusterSize (8);
+          float weight2 = segmentsWeight (weights, n,
+              hier.path (segments, weights));
+
+          assertEquals (weight1, weight2, 1E-4);
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Clusters must cover every segment exactly once and not be too large.
+
+  @Test
+  public void cluster ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (813);
+      MinSpanTree mst = new MinSpanTreePrims ();
+      Segmenter segmenter = new Segmenter ();
+      for (int test = 0; test < 100; test++)
+        {
+          int n = 50 + rand.nextInt (200);
+          CoordArrayFloat coords = new CoordArrayFloat (scatter (rand, n));
+          Weights weights = new WeightsEuclid (coords);
+          Segment segments [] =
+              segmenter.segments (mst.edges (n, weights), weights);
+          int maxSize = 2 + rand.nextInt (10);
+
+          SegmentShortHamPathHier hier = new SegmentShortHamPathHier ();
+          hier.setMaxClusterSize (maxSize);
+          int clusters [] [] = hier.cluster (segments, weights);
+
+          //  The segment MST from the terminals' spatial MST is the same.
+
+          assertTrue (Arrays.deepEquals (clusters,
+                                         hier.cluster (segments, weights,
+                                                       coords)));
+
+          int count [] = new int [segments.length];
+          for (int cluster [] : clusters)
+            {
+              assertTrue (cluster.length >= 1 && cluster.length <= maxSize);
+              for (int i : cluster)
+                  count[i] ++;
+            }
+          for (int c : count)
+              assertEquals (c, 1);
+          assertTrue (clusters.length < segments.length);
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Compare against the usual Segmented-SHP on messy lines with many
+  //  segments, but few enough after branch reduction for it to connect them
+  //  exactly.
+
+  @Test
+  public void compare ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (6104);
+      int numTests = 10;
+      float total1 = 0, total2 = 0;
+      Timer timer = new Timer ();
+      double time1 = 0, time2 = 0;
+
+      for (int test = 0; test < numTests; test++)
+        {
+          int n = 100 + rand.nextInt (100);
+          CoordArray coords = line (rand, n);
+          Weights weights = new WeightsEuclid (coords);
+
+          timer.restart ();
+          int path1 [] = new OrderSegmentSHP ().path (coords);
+          time1 += timer.cpu ();
+
+          timer.restart ();
+          OrderSegmentSHP order2 = new OrderSegmentSHP ();
+          order2.setHierarchical (true);
+          OrderResult result2 = order2.solve (coords);
+          int path2 [] = result2.path ();
+          time2 += timer.cpu ();
+          assertTrue (result2.numSegments () > 12);    //  Default cluster size
+
+          assertTrue (isPathASpanningTree (path2));
+          float weight1 = pathWeight (weights, path1);
+          float weight2 = pathWeight (weights, path2);
+          printf ("   %5d %4d %4d   %8.2f %8.2f%n", test+1, n,
+                  result2.numSegments (), weight1, weight2);
+          total1 += weight1;
+          total2 += weight2;
+        }
+
+      printf ("%n   Total weight:   %8.2f %8.2f%n", total1, total2);
+      printf ("   CPU time:       %8.2f %8.2f s%n%n", time1, time2);
+      assertTrue (total2 < 1.01 * total1);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  The time to connect the segments must grow about linearly with their
+  //  number.
+
+  @Test
+  public void scaling ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (6105);
+      Segmenter segmenter = new Segmenter ();
+      int sizes [] = { 10000, 10000, 40000 };    //  The first warms up.
+      double times [] = new double [sizes.length];
+      for (int k = 0; k < sizes.length; k++)
+        {
+          int n = sizes[k];
+          CoordArray coords = line (rand, n);
+          Weights weights = new WeightsEuclidLazy (coords);
+          Segment segments [] = segmenter.segments (
+              new MinSpanTreeSpatial ().edges (coords), weights);
+
+          Timer timer = new Timer ();
+          Segment ordered [] = new SegmentShortHamPathHier ().path (
+              segments, weights, coords);
+          times[k] = timer.cpu ();
+          float weight = segmentsWeight (weights, n, ordered);
+          printf ("   n = %6d, %5d segments: %.3f s, weight %.1f%n", n,
+                  segments.length, times[k], weight);
+          assertTrue (weight < 1.05 * n);
+        }
+      printf ("%n");
+      assertTrue (times[2] < 8 * times[1] + 0.5);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static float segmentsWeight (Weights weights, int n,
+                                       Segment segments [])
+    {
+      int path [] = new int [n];
+      int start = 0;
+      for (Segment segment : segments)
+        {
+          segment.load (path, start);
+          start += segment.length ();
+        }
+      assertEquals (start, n);
+      assertTrue (isPathASpanningTree (path));
+      return pathWeight (weights, path);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  A messy line of stations about one unit apart, wandering by up to five
+  //  units along the line and a little across it.
+
+  private static CoordArray line (Random rand, int n)
+    {
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int i = 0; i < n; i++)
+          coords.set (i, i + 5 * rand.nextFloat (), 0.3F * rand.nextFloat ());
+      return coords;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Scatter coordinates across a 10 x 1 rectangle.
+
+  private static Coord [] scatter (Random rand, int n)
+    {
+      Coord coords [] = new Coord [n];
+      for (int i = 0; i < n; i++)
+          coords[i] = new Coord (10 * rand.nextFloat (), rand.nextFloat ());
+      return coords;
+    }
+}
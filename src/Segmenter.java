@@ -2,6 +2,9 @@
  *  Decompose a graph into segments, meaning lists of sequential adjacent
  *  vertices.
  *
+ *  The segments are built up in a local list, so one Segmenter may be
+ *  shared between threads.
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
@@ -11,11 +14,23 @@ import static CrossSpreadOrder.Print.printf;
 
 public class Segmenter
 {
-  int numSegments;
-  Segment [] segments;
   float medianMult = 2F;
   boolean print = false;
 
+  //  The segments found so far during one call to "segments".
+
+  private static class SegmentList
+    {
+      int numSegments = 0;
+      final Segment segments [];
+
+      SegmentList (int n)
+        { segments = new Segment [n]; }
+
+      void add (Segment segment)
+        { segments[numSegments++] = segment; }
+    }
+
   //////////////////////////////////////////////////////////////////////////////
 
   void setMedianMult (float medianMult)
@@ -40,8 +55,7 @@ public class Segmenter
             { new SegmentSeries (new int [] { 0, 1 }) };
 
       int n = edges.length + 1;
-      numSegments = 0;
-      segments = new Segment [n];
+      SegmentList list = new SegmentList (n);
 
       //  Find the degree of every vertex in the tree
 
@@ -52,17 +66,9 @@ public class Segmenter
           degrees[edges[i]] ++;
         }
 
-      //  Determine a distance limit, which is a multiple of the median
-      //  distance between every two nodes.
+      //  Determine a distance limit beyond which edges are cut.
 
-      int length = edges.length;
-      float adjWeights [] = new float [length-1];
-      for (int i = 0; i < length-1; i++)
-          adjWeights[i] = weights.value (i, edges[i]);
-      float median = Sort.median (adjWeights, length-1);
-      if (print)
-          printf ("   Median = %f%n", median);
-      float limit = medianMult * median;
+      float limit = limit (edges, weights);
 
       //  Build the connect structure, which lists every vertex that every
       //  vertex is connected to in the minimum spanning tree.
@@ -109,21 +115,40 @@ public class Segmenter
       for (start = 0; start < n; start++)
         {
           if (! visited[start] && degrees[start] <= 1)
-              buildRecurse (start, degrees, connect, visited);
+              buildRecurse (start, degrees, connect, visited, list);
         }
 
       //  Shorten the output segment array.
 
-      Segment newSegments [] = new Segment [numSegments];
-      for (int i = 0; i < numSegments; i++)
-          newSegments[i] = segments[i];
+      Segment newSegments [] = new Segment [list.numSegments];
+      for (int i = 0; i < list.numSegments; i++)
+          newSegments[i] = list.segments[i];
       return newSegments;
     }
 
+  //////////////////////////////////////////////////////////////////////////////
+  //  Determine the distance limit, which is a multiple of the median
+  //  distance between every two nodes. MST edges longer than this are cut.
+  //  A limit of zero means no edges are cut.
+
+  float limit (int edges [], Weights weights)
+    {
+      int length = edges.length;
+      if (length <= 1)
+          return 0;
+      float adjWeights [] = new float [length-1];
+      for (int i = 0; i < length-1; i++)
+          adjWeights[i] = weights.value (i, edges[i]);
+      float median = Sort.median (adjWeights, length-1);
+      if (print)
+          printf ("   Median = %f%n", median);
+      return medianMult * median;
+    }
+
   //////////////////////////////////////////////////////////////////////////////
 
   private void buildRecurse (int start, int degrees[], int connect [] [],
-                             boolean isVisited [])
+                             boolean isVisited [], SegmentList list)
     {
       if (print)
           printf ("   Start = %5d", start);
@@ -134,8 +159,8 @@ public class Segmenter
       if (degree == 0 || (degree == 1 && isVisited [connect[start][0]]))
         {
           if (print)
-              printf ("   A %3d   Length %4d%n", numSegments+1, 1);
-          segments[numSegments++] = new SegmentSeries (start);
+              printf ("   A %3d   Length %4d%n", list.numSegments+1, 1);
+          list.add (new SegmentSeries (start));
         }
       else if (degree <= 2)
         {
@@ -154,8 +179,9 @@ public class Segmenter
                   isVisited[start] = true;
                   series[n++] = start;
                   if (print)
-                      printf ("   B %3d   Length %4d%n", numSegments+1, n);
-                  segments[numSegments++] = new SegmentSeries (series, n);
+                      printf ("   B %3d   Length %4d%n",
+                              list.numSegments+1, n);
+                  list.add (new SegmentSeries (series, n));
                   return;
                 }
               else if (degree == 2)
@@ -167,9 +193,10 @@ public class Segmenter
                 {
                   assert degree >= 3;
                   if (print)
-                      printf ("   C %3d   Length %4d%n", numSegments+1, n);
-                  segments[numSegments++] = new SegmentSeries (series, n);
-                  buildRecurse (start, degrees, connect, isVisited);
+                      printf ("   C %3d   Length %4d%n",
+                              list.numSegments+1, n);
+                  list.add (new SegmentSeries (series, n));
+                  buildRecurse (start, degrees, connect, isVisited, list);
                   return;
                 }
             }
@@ -177,12 +204,12 @@ public class Segmenter
       else    // degree >= 3
         {
           if (print)
-              printf ("   D %3d   Length %4d%n", numSegments+1, 1);
-          segments[numSegments++] = new SegmentSeries (start);
+              printf ("   D %3d   Length %4d%n", list.numSegments+1, 1);
+          list.add (new SegmentSeries (start));
           for (int i = 0; i < degree; i++)
               if (! isVisited [connect [start] [i]])
                   buildRecurse (connect [start] [i], degrees, connect,
-                                isVisited);
+                                isVisited, list);
         }
 
       if (print)
@@ -29,6 +29,11 @@
  *  All three methods assume that the vertex numbers go from 0 to n-1.
  *  If you want to provide specific vertex numbers then call the other
  *  provided methods, which will eventually call one of the three methods above.
+ *  These solve a copy of the object (see newInstance) with renumbered weights,
+ *  so the weights of this object are never changed.
+ *
+ *  A ShortHamPath object may hold the state of a search in progress, so
+ *  don't share one between threads. Create one per problem instead.
  *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
@@ -41,7 +46,7 @@ import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
 
 public abstract class ShortHamPath
   {
-    protected Weights weights;
+    protected final Weights weights;
     protected boolean print = false;
     protected enum PathType { Open, SemiEnclosed, Enclosed }
 
@@ -53,6 +58,12 @@ public abstract class ShortHamPath
     public void setPrint (boolean print)
       { this.print = print; }
 
+    ////////////////////////////////////////////////////////////////////////////
+    //  Return a new object of the same class and settings as this one, but
+    //  with different weights.
+
+    protected abstract ShortHamPath newInstance (Weights weights);
+
     ////////////////////////////////////////////////////////////////////////////
 
     public int [] path (int n)
@@ -106,17 +117,17 @@ public abstract class ShortHamPath
         assert vertices.length >= end;
         int n = end - start;
 
-        Weights weightsSave = weights;
-        weights = resequenceWeights (vertices, start, end);
+        ShortHamPath shp = newInstance (resequenceWeights (vertices, start,
+                                                          end));
+        shp.setPrint (print);
         int path1 [] = null;
         switch (type)
           {
-            case Open:          path1 = path (n);              break;
-            case SemiEnclosed:  path1 = semiEnclosedPath (n);  break;
-            case Enclosed:      path1 = enclosedPath (n);      break;
+            case Open:          path1 = shp.path (n);              break;
+            case SemiEnclosed:  path1 = shp.semiEnclosedPath (n);  break;
+            case Enclosed:      path1 = shp.enclosedPath (n);      break;
             default: assert false : "Unrecognized path type = " + type;
           }
-        weights = weightsSave;
 
         //  Sanity checking.
 
@@ -143,6 +154,13 @@ public abstract class ShortHamPath
         assert end > start;
         assert vertices.length >= end;
 
+        //  Quantized weights stay quantized, so that the solver can still
+        //  use integer arithmetic on them.
+
+        if (weights instanceof WeightsQuantized)
+            return ((WeightsQuantized) weights).resequence (vertices, start,
+                                                            end);
+
         int n = end - start;
         float matrix [] [] = new float [n] [n];
         for (int i = 0; i < n-1; i++)
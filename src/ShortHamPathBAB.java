@@ -8,6 +8,7 @@
 
 package CrossSpreadOrder;
 import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.checkInterrupt;
 
 ////////////////////////////////////////////////////////////////////////////////
 
@@ -34,6 +35,16 @@ public class ShortHamPathBAB extends ShortHamPathDepth
 
     ////////////////////////////////////////////////////////////////////////////
 
+    @Override
+    protected ShortHamPath newInstance (Weights weights)
+      {
+        ShortHamPathBAB shp = new ShortHamPathBAB (weights);
+        shp.upperLimit = upperLimit;
+        return shp;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
     void setUpperLimit (float upperLimit)
       {
         assert upperLimit >= 0;
@@ -107,6 +118,7 @@ public class ShortHamPathBAB extends ShortHamPathDepth
             printf ("%n");
           }
         numCalls[level] ++;
+        checkInterrupt ();
 
         //  Bottom of the depth search?
 
@@ -28,6 +28,12 @@
  *
  *  It's computational complexity is roughly O(n^3).
  *
+ *  Most of that time is spent comparing every leaf on one side of a branch
+ *  edge with every leaf on the other. Given candidate neighbours for each
+ *  vertex (see setCandidates), only candidate pairs are compared, each in
+ *  O(log n) time, so a step is close to linear. The full comparison is then
+ *  only made when a step finds no candidate pair at all.
+ *
  *  Copyright (c) 2023 Stewart Trickett
  *  Licensed under the MIT License (see LICENSE.md file)
  */
@@ -38,18 +44,37 @@ import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
 import static CrossSpreadOrder.GraphUtil.isSpanningTree;
 import static CrossSpreadOrder.GraphUtil.leaves;
 import static CrossSpreadOrder.GraphUtil.setEdges;
+import static CrossSpreadOrder.SystemCall.checkInterrupt;
 
 import java.util.Set;
 
 public class ShortHamPathBE extends ShortHamPath
 {
    MinSpanTree mst = new MinSpanTreePrims ();
+   private int candidates [] [] = null;
 
    /////////////////////////////////////////////////////////////////////////////
 
    ShortHamPathBE (Weights weights)
      { super (weights); }
 
+   @Override
+   protected ShortHamPath newInstance (Weights weights)
+     {
+       ShortHamPathBE shp = new ShortHamPathBE (weights);
+       shp.mst = mst;
+       return shp;
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  candidates[i] lists vertices near vertex i, such as its k nearest
+   //  neighbours (see SpatialGrid.neighbours). Leaves a and b are only
+   //  joined if one is a candidate of the other. These are in terms of this
+   //  object's vertex numbers, so they are not passed on to newInstance.
+
+   void setCandidates (int candidates [] [])
+     { this.candidates = candidates; }
+
    /////////////////////////////////////////////////////////////////////////////
 
    @Override
@@ -117,7 +142,10 @@ public class ShortHamPathBE extends ShortHamPath
      {
        assert isSpanningTree (adjacent);
        while (adjacent.totalBranchingDegree () > maxBranch)
+         {
+           checkInterrupt ();
            branchEliminate (adjacent);
+         }
        assert isSpanningTree (adjacent);
      }
 
@@ -127,6 +155,9 @@ public class ShortHamPathBE extends ShortHamPath
 
    public void branchEliminate (Adjacent adjacent)
      {
+       if (candidates != null && branchEliminateSparse (adjacent))
+           return;
+
        int n = adjacent.numVertices();
 
        //  Find the edge of a branching vertex and two leaves that gives the
@@ -191,6 +222,205 @@ public class ShortHamPathBE extends ShortHamPath
        adjacent.add (bestA, bestB);
      }
 
+   /////////////////////////////////////////////////////////////////////////////
+   //  The same as branchEliminate, but only joining candidate pairs.
+   //  Returns false, leaving the tree unchanged, if there are none.
+   //
+   //  Rather than splitting the tree at every branch edge and listing the
+   //  leaves of each side, this works from the candidate pairs. Vertices a
+   //  and b can be joined by removing edge (i,j) if (i,j) lies on the tree
+   //  path from a to b, i or j has degree above 2, and both a and b are
+   //  leaves once (i,j) is removed. For degree-2 vertices the last condition
+   //  means (i,j) must be one of their own edges. The best edge to remove
+   //  for a pair is therefore the heaviest such edge on its path, which is
+   //  found in O(log n) time using ancestor tables ("binary lifting").
+
+   private boolean branchEliminateSparse (Adjacent adjacent)
+     {
+       int n = adjacent.numVertices();
+       assert candidates.length == n;
+       Lifting lifting = new Lifting (adjacent);
+
+       int bestA = -1, bestB = -1, bestI = -1, bestJ = -1;
+       float bestWeight = Float.MAX_VALUE;
+
+       for (int a = 0; a < n; a++)
+         {
+           int degreeA = adjacent.degree (a);
+           if (degreeA > 2)
+               continue;
+           for (int b : candidates[a])
+             {
+               int degreeB = adjacent.degree (b);
+               if (b == a || degreeB > 2 || (degreeA == 2 && degreeB == 2) ||
+                   (b < a && contains (candidates[b], a)))
+                   continue;   // Not joinable, or considered already
+
+               //  The removable edge, given by its lower vertex v.
+
+               int v;
+               if (degreeA == 2)
+                   v = lifting.firstEdge (a, b);
+               else if (degreeB == 2)
+                   v = lifting.firstEdge (b, a);
+               else
+                   v = lifting.heaviestEdge (a, b);
+               if (v < 0 || lifting.weight[0][v] == -Float.MAX_VALUE)
+                   continue;
+
+               float weightChange = weights.value (a, b) - lifting.weight[0][v];
+               if (weightChange < bestWeight)
+                 {
+                   bestI = v;
+                   bestJ = lifting.up[0][v];
+                   bestA = a;
+                   bestB = b;
+                   bestWeight = weightChange;
+                 }
+             }
+         }
+       if (bestI < 0)
+           return false;
+
+       //  Detach bestI from bestJ and attach bestA to bestB.
+
+       assert adjacent.isNeighbor (bestI, bestJ);
+       adjacent.remove (bestI, bestJ);
+       assert adjacent.degree (bestA) <= 1 && adjacent.degree (bestB) <= 1;
+       adjacent.add (bestA, bestB);
+       return true;
+     }
+
+   private static boolean contains (int array [], int value)
+     {
+       for (int a : array)
+           if (a == value)
+               return true;
+       return false;
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  The tree rooted at vertex 0, with tables of each vertex's 2**k'th
+   //  ancestor and of the heaviest removable edge among the 2**k edges
+   //  above it. An edge is identified by its lower vertex, and is removable
+   //  if either end has degree above 2. Other edges have weight
+   //  -Float.MAX_VALUE.
+
+   private class Lifting
+     {
+       final int depth [], up [] [], heaviest [] [];
+       final float weight [] [];
+
+       Lifting (Adjacent adjacent)
+         {
+           int n = adjacent.numVertices ();
+           int levels = 32 - Integer.numberOfLeadingZeros (n);
+           depth = new int [n];
+           up = new int [levels] [n];
+           heaviest = new int [levels] [n];
+           weight = new float [levels] [n];
+
+           //  Breadth-first search from the root.
+
+           int queue [] = new int [n];
+           int numQueued = 1;
+           up[0][0] = 0;
+           for (int q = 0; q < numQueued; q++)
+             {
+               int u = queue[q];
+               for (int w : adjacent.neighbors (u))
+                   if (w != up[0][u] || u == 0)
+                     {
+                       up[0][w] = u;
+                       depth[w] = depth[u] + 1;
+                       queue[numQueued++] = w;
+                     }
+             }
+           assert numQueued == n;
+
+           for (int v = 0; v < n; v++)
+             {
+               int u = up[0][v];
+               heaviest[0][v] = v;
+               weight[0][v] = v != 0 && (adjacent.degree (v) > 2 ||
+                                         adjacent.degree (u) > 2)
+                              ? weights.value (v, u) : -Float.MAX_VALUE;
+             }
+           for (int k = 1; k < levels; k++)
+           for (int v = 0; v < n; v++)
+             {
+               int mid = up[k-1][v];
+               up[k][v] = up[k-1][mid];
+               boolean upper = weight[k-1][mid] > weight[k-1][v];
+               heaviest[k][v] = upper ? heaviest[k-1][mid] : heaviest[k-1][v];
+               weight[k][v] = upper ? weight[k-1][mid] : weight[k-1][v];
+             }
+         }
+
+       //  The ancestor of v at the given depth.
+
+       int ancestor (int v, int targetDepth)
+         {
+           for (int k = 0, diff = depth[v] - targetDepth; diff > 0;
+                k++, diff >>= 1)
+               if ((diff & 1) != 0)
+                   v = up[k][v];
+           return v;
+         }
+
+       //  The first edge on the path from a to b.
+
+       int firstEdge (int a, int b)
+         {
+           if (depth[b] > depth[a] && ancestor (b, depth[a]) == a)
+               return ancestor (b, depth[a] + 1);
+           return a;
+         }
+
+       //  The heaviest removable edge on the path from a to b, or -1 if
+       //  a == b.
+
+       int heaviestEdge (int a, int b)
+         {
+           int best = -1;
+           float bestWeight = -Float.MAX_VALUE;
+           if (depth[a] < depth[b])
+             { int t = a; a = b; b = t; }
+           for (int k = 0, diff = depth[a] - depth[b]; diff > 0;
+                k++, diff >>= 1)
+               if ((diff & 1) != 0)
+                 {
+                   if (best < 0 || weight[k][a] > bestWeight)
+                     {
+                       best = heaviest[k][a];
+                       bestWeight = weight[k][a];
+                     }
+                   a = up[k][a];
+                 }
+           if (a == b)
+               return best;
+           for (int k = up.length - 1; k >= 0; k--)
+               if (up[k][a] != up[k][b])
+                 {
+                   for (int v : new int [] { a, b })
+                       if (best < 0 || weight[k][v] > bestWeight)
+                         {
+                           best = heaviest[k][v];
+                           bestWeight = weight[k][v];
+                         }
+                   a = up[k][a];
+                   b = up[k][b];
+                 }
+           for (int v : new int [] { a, b })
+               if (best < 0 || weight[0][v] > bestWeight)
+                 {
+                   best = v;
+                   bestWeight = weight[0][v];
+                 }
+           return best;
+         }
+     }
+
    /////////////////////////////////////////////////////////////////////////////
 
    @Override
@@ -210,7 +440,10 @@ public class ShortHamPathBE extends ShortHamPath
        assert isSpanningTree (adjacent);
 
        while (adjacent.degree(0) != 1 || adjacent.totalBranchingDegree () > 0)
+         {
+           checkInterrupt ();
            branchEliminateSE (adjacent);
+         }
 
        assert isSpanningTree (adjacent);
 
@@ -7,10 +7,12 @@
 
 package CrossSpreadOrder;
 
+import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
 import static CrossSpreadOrder.GraphUtil.pathWeight;
 import static CrossSpreadOrder.Print.printf;
 import static CrossSpreadOrder.SystemCall.className;
 import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Random;
 
@@ -180,4 +182,87 @@ public class ShortHamPathBETest
          }
        printf ("%n");
      }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  Measure the quality lost and time saved by only joining candidate
+   //  leaf pairs.
+
+   @Test
+   public void sparse ()
+     {
+       printf ("%s: %s%n%n", className(), methodName());
+
+       Random rand = new Random (3901);
+       OrderBranchEliminate full = new OrderBranchEliminate ();
+       OrderBranchEliminate sparse = new OrderBranchEliminate ();
+       sparse.setNumCandidates (10);
+       float total1 = 0, total2 = 0;
+       double time1 = 0, time2 = 0;
+
+       printf ("      n     Full   Sparse%n");
+       for (int test = 0; test < 10; test++)
+         {
+           int n = 200 + rand.nextInt (600);
+           CoordArrayFloat coords = new CoordArrayFloat (n);
+           for (int i = 0; i < n; i++)
+               coords.set (i, 10 * rand.nextFloat (), rand.nextFloat ());
+           Weights weights = new WeightsEuclid (coords);
+
+           Timer timer = new Timer ();
+           int path1 [] = full.path (coords);
+           time1 += timer.elapsed ();
+           timer.restart ();
+           int path2 [] = sparse.path (coords);
+           time2 += timer.elapsed ();
+
+           assertTrue (isPathASpanningTree (path2));
+           float weight1 = pathWeight (weights, path1);
+           float weight2 = pathWeight (weights, path2);
+           printf ("   %4d %8.2f %8.2f%n", n, weight1, weight2);
+           total1 += weight1;
+           total2 += weight2;
+         }
+       printf ("%n   Total %8.2f %8.2f   (%+.2f%%)%n", total1, total2,
+               100 * (total2 - total1) / total1);
+       printf ("   Time  %8.2f %8.2f s%n%n", time1, time2);
+       assertTrue (total2 < 1.02 * total1);
+
+       //  A 2,000 point line.
+
+       int n = 2000;
+       CoordArrayFloat coords = new CoordArrayFloat (n);
+       for (int i = 0; i < n; i++)
+           coords.set (i, 50 * rand.nextFloat (), rand.nextFloat ());
+       Timer timer = new Timer ();
+       int path [] = sparse.path (coords);
+       printf ("   n = %d sparse: %.2f s%n%n", n, timer.elapsed ());
+       assertTrue (isPathASpanningTree (path));
+     }
+
+   /////////////////////////////////////////////////////////////////////////////
+   //  A long, nearly straight line gives an MST tens of thousands of
+   //  vertices deep, which must not overflow the stack.
+
+   @Test
+   public void sparseLong ()
+     {
+       printf ("%s: %s%n%n", className(), methodName());
+
+       Random rand = new Random (3902);
+       OrderBranchEliminate sparse = new OrderBranchEliminate ();
+       sparse.setNumCandidates (8);
+       for (int n : new int [] { 5000, 50000 })
+         {
+           CoordArrayFloat coords = new CoordArrayFloat (n);
+           for (int i = 0; i < n; i++)
+               coords.set (i, i + 0.2F * rand.nextFloat (), rand.nextFloat ());
+           Timer timer = new Timer ();
+           int path [] = sparse.path (coords);
+           printf ("   n = %5d sparse: %.2f s%n", n, timer.elapsed ());
+           assertTrue (isPathASpanningTree (path));
+           assertTrue (pathWeight (new WeightsEuclidLazy (coords), path) <
+                       1.5F * n);
+         }
+       printf ("%n");
+     }
 }
@@ -26,6 +26,10 @@ public class ShortHamPathDepth extends ShortHamPath
     ShortHamPathDepth (Weights weights)
       { super (weights); }
 
+    @Override
+    protected ShortHamPath newInstance (Weights weights)
+      { return new ShortHamPathDepth (weights); }
+
     ////////////////////////////////////////////////////////////////////////////
 
     @Override
@@ -20,6 +20,10 @@ public class ShortHamPathDynamic extends ShortHamPath
   public ShortHamPathDynamic (Weights weights)
     { super (weights); }
 
+  @Override
+  protected ShortHamPath newInstance (Weights weights)
+    { return new ShortHamPathDynamic (weights); }
+
   //////////////////////////////////////////////////////////////////////////////
 
   @Override
@@ -28,6 +32,8 @@ public class ShortHamPathDynamic extends ShortHamPath
       assert n >= 0 && n < 32;
       if (n <= 1)
           return new int [n];
+      if (weights instanceof WeightsQuantized)
+          return pathUnits (n, (WeightsQuantized) weights);
 
       float weight [] [] = new float [n] [n];
       for (int i = 0; i < n; i++)
@@ -79,4 +85,62 @@ public class ShortHamPathDynamic extends ShortHamPath
 
      return path;
    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The same algorithm using integer arithmetic on quantized weights.
+
+  private int [] pathUnits (int n, WeightsQuantized weights)
+    {
+      int weight [] [] = new int [n] [n];
+      for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+          weight[i][j] = weights.units (i, j);
+
+      //  Construct dp. This takes O(2**n n**2).
+
+      int twoN = 1 << n;
+      int infinity = Integer.MAX_VALUE / 2;
+      int dp [] [] = new int [twoN] [n];
+      for (int [] d : dp)
+          Arrays.fill (d, infinity);
+      for (int i = 0; i < n; i++)
+          dp[1<<i][i] = 0;
+      for (int mask = 0; mask < twoN; mask++)
+      for (int i = 0; i < n; i++)
+        {
+          int twoI = 1 << i;
+          if ((mask & twoI) != 0)
+            {
+              int minDP = dp[mask][i];
+              int maskTwoI = mask^twoI;
+              int dpMaskTwoI [] = dp[maskTwoI];
+              int weighti [] = weight[i];
+              for (int j = 0; j < n; j++)
+                  if ((mask & 1 << j) != 0)
+                      minDP = min (minDP, dpMaskTwoI[j] + weighti[j]);
+              dp[mask][i] = minDP;
+            }
+        }
+
+      // Reconstruct path. This takes O(n**2)
+
+      int cur = twoN - 1;
+      int path [] = new int [n];
+      int last = -1;
+      for (int i = n - 1; i >= 0; i--)
+        {
+          int bj = -1;
+          for (int j = 0; j < n; j++)
+              if ((cur & 1 << j) != 0 &&
+                  (bj == -1 ||
+                   dp[cur][bj] + (last == -1 ? 0 : weight[bj][last]) >
+                   dp[cur][j] + (last == -1 ? 0 : weight[j][last])))
+                  bj = j;
+          path[i] = bj;
+          cur ^= 1 << bj;
+          last = bj;
+        }
+
+     return path;
+   }
 }
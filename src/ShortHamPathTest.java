@@ -267,6 +267,69 @@ public class ShortHamPathTest
     }
 
 
+  //////////////////////////////////////////////////////////////////////////////
+  //  Quantized weights. The integer DP and the BAB on unit weights must find
+  //  paths of exactly the same weight, within rounding of the float optimum.
+
+  @Test
+  public void quantized ()
+    {
+      printTitle ();
+      Random rand = new Random (3501);
+
+      for (int test = 0; test < 100; test++)
+        {
+          int n = 2 + rand.nextInt (14);
+          Weights weights = scatterWeights (rand, n);
+          WeightsQuantized quantized = new WeightsQuantized (n, weights);
+          Weights units = quantized.unitWeights ();
+
+          int path1 [] = new ShortHamPathDynamic (quantized).path (n);
+          int path2 [] = new ShortHamPathBAB (units).path (n);
+          int path3 [] = new ShortHamPathDynamic (weights).path (n);
+          assertTrue (isPathASpanningTree (path1));
+          assertTrue (isPathASpanningTree (path2));
+          assertEquals (pathWeight (units, path1), pathWeight (units, path2),
+                        0);
+
+          float optimum = pathWeight (weights, path3);
+          assertEquals (optimum, pathWeight (weights, path1),
+                        n * quantized.scale ());
+
+          //  Solving a renumbered subset keeps the weights quantized.
+
+          int vertices [] = new int [n];
+          for (int i = 0; i < n; i++)
+              vertices[i] = (i + 3) % n;
+          WeightsQuantized sub = quantized.resequence (vertices, 1, n);
+          for (int i = 0; i < n - 1; i++)
+          for (int j = 0; j < n - 1; j++)
+              assertEquals (quantized.units (vertices[i + 1], vertices[j + 1]),
+                            sub.units (i, j));
+          int path4 [] = new ShortHamPathDynamic (quantized).path (vertices);
+          assertEquals (pathWeight (units, path1), pathWeight (units, path4),
+                        0);
+
+          //  OrderFullSHP on quantized weights, by dynamic programming or
+          //  branch-and-bound.
+
+          if (test % 10 == 0)
+            {
+              CoordArrayFloat coords = new CoordArrayFloat (n + 5 * (test % 3));
+              for (int i = 0; i < coords.length (); i++)
+                  coords.set (i, rand.nextFloat (), rand.nextFloat ());
+              OrderFullSHP order = new OrderFullSHP ();
+              int exact [] = order.path (coords);
+              order.setQuantized (true);
+              int approx [] = order.path (coords);
+              Weights euclid = new WeightsEuclid (coords);
+              assertTrue (isPathASpanningTree (approx));
+              assertEquals (pathWeight (euclid, exact),
+                            pathWeight (euclid, approx), 1e-3);
+            }
+        }
+    }
+
   //////////////////////////////////////////////////////////////////////////////
   //  Test problem reduction.
   //  How much do MSTs reduce the size of the SHP problem?
@@ -300,8 +363,9 @@ public class ShortHamPathTest
 
           OrderSegmentSHP shpSegment = new OrderSegmentSHP ();
           shpSegment.setMedianMult (10000);
-          float length2 = pathWeight (weights, shpSegment.path (coords));
-          int ns = shpSegment.numSegments ();
+          OrderResult result = shpSegment.solve (coords);
+          float length2 = pathWeight (weights, result.path ());
+          int ns = result.numSegments ();
           assert ns <= n;
           numSegments += ns;
 
@@ -209,6 +209,80 @@ public class SortTest
           }
      }
 
+///////////////////////////////////////////////////////////////////////////////
+//  The primitive index sort must match the boxed one.
+
+@Test
+    public void argsort ()
+      {
+        printf ("%s: %s%n%n", className(), methodName());
+        Random rand = new Random (4101);
+        float specials [] = { 0F, -0F, Float.MAX_VALUE, -Float.MAX_VALUE,
+                              Float.MIN_VALUE, -Float.MIN_VALUE,
+                              Float.POSITIVE_INFINITY,
+                              Float.NEGATIVE_INFINITY };
+
+        for (int test = 0; test < 2000; test++)
+          {
+            int n = 1 + rand.nextInt (test < 1000 ? 20 : 2000);
+            float floats [] = new float [n];
+            int ints [] = new int [n];
+            long longs [] = new long [n];
+            for (int i = 0; i < n; i++)
+              {
+                switch (test % 4)
+                  {
+                    case 0:  floats[i] = rand.nextInt (10) - 5;  break;
+                    case 1:  floats[i] = (float) rand.nextGaussian () * 1e6F;
+                             break;
+                    case 2:  floats[i] = specials[rand.nextInt (8)];  break;
+                    default: floats[i] = Float.intBitsToFloat (rand.nextInt ());
+                             if (Float.isNaN (floats[i]))
+                                 floats[i] = 1;
+                  }
+                ints[i] = test % 2 == 0 ? rand.nextInt (10) - 5
+                                        : rand.nextInt ();
+                longs[i] = test % 2 == 0 ? ints[i] : rand.nextLong ();
+              }
+
+            Integer boxed [] = SortIndex.sort (floats);
+            int index [] = SortIndex.argsort (floats);
+            for (int i = 0; i < n; i++)
+                assertEquals ((int) boxed[i], index[i]);
+
+            boxed = SortIndex.sort (ints);
+            index = SortIndex.argsort (ints);
+            for (int i = 0; i < n; i++)
+                assertEquals ((int) boxed[i], index[i]);
+
+            Arrays.sort (boxed, (a, b) -> a - b);
+            Arrays.sort (boxed, (a, b) -> Long.compare (longs[a], longs[b]));
+            index = SortIndex.argsort (longs);
+            for (int i = 0; i < n; i++)
+                assertEquals ((int) boxed[i], index[i]);
+          }
+
+        //  -0 and +0 are equal, so keep their original order. NaN is last.
+
+        int index [] = SortIndex.argsort (new float []
+                           { 0F, Float.NaN, -0F, 0F, -1F });
+        assertTrue (Arrays.equals (new int [] { 4, 0, 2, 3, 1 }, index));
+
+        //  Timing.
+
+        int n = 1000000;
+        float array [] = new float [n];
+        for (int i = 0; i < n; i++)
+            array[i] = rand.nextFloat ();
+        Timer timer = new Timer ();
+        SortIndex.sort (array);
+        double boxedTime = timer.elapsed ();
+        timer.restart ();
+        SortIndex.argsort (array);
+        printf ("   n = %d: boxed %.3f s, primitive %.3f s%n%n", n, boxedTime,
+                timer.elapsed ());
+      }
+
 ///////////////////////////////////////////////////////////////////////////////
 
     private float slowMedian (float array [])
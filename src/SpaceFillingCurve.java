@@ -0,0 +1,118 @@
+/**
+ *  Number the locations of a line along a space-filling curve, so that
+ *  locations that are close in space are usually close in number.
+ *
+ *  The coordinates are scaled onto a square grid of 2^15 x 2^15 cells,
+ *  using the same scale for x and y, and each cell is given its distance
+ *  along the curve. Two curves are available:
+ *
+ *     Hilbert  Consecutive cells are always adjacent, so locality is best.
+ *     Morton   The bits of x and y are simply interleaved ("Z-order"). This
+ *              is cheaper to calculate but jumps now and then.
+ *
+ *  Locations are ordered by their cell's distance, with ties broken by
+ *  the original index.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class SpaceFillingCurve
+  {
+    enum Curve { Hilbert, Morton }
+
+    static final int ORDER = 15;        //  Bits per axis
+    private static final int SIDE = 1 << ORDER;
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The distance along the Hilbert curve of cell (x,y), where x and y lie
+    //  in [0, 2^ORDER).
+
+    static int hilbert (int x, int y)
+      {
+        assert x >= 0 && x < SIDE && y >= 0 && y < SIDE;
+        int d = 0;
+        for (int s = SIDE / 2; s > 0; s /= 2)
+          {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += s * s * ((3 * rx) ^ ry);
+
+            //  Rotate the quadrant.
+
+            if (ry == 0)
+              {
+                if (rx == 1)
+                  {
+                    x = SIDE - 1 - x;
+                    y = SIDE - 1 - y;
+                  }
+                int t = x; x = y; y = t;
+              }
+          }
+        return d;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The distance along the Morton curve of cell (x,y).
+
+    static int morton (int x, int y)
+      {
+        assert x >= 0 && x < SIDE && y >= 0 && y < SIDE;
+        return spread (x) | (spread (y) << 1);
+      }
+
+    //  Move bit k of v to bit 2k.
+
+    private static int spread (int v)
+      {
+        v = (v | (v << 8)) & 0x00FF00FF;
+        v = (v | (v << 4)) & 0x0F0F0F0F;
+        v = (v | (v << 2)) & 0x33333333;
+        v = (v | (v << 1)) & 0x55555555;
+        return v;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The curve distance of every location.
+
+    static int [] keys (CoordArray coords, Curve curve)
+      {
+        int n = coords.length ();
+        int keys [] = new int [n];
+        if (n == 0)
+            return keys;
+
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++)
+          {
+            minX = Math.min (minX, coords.x (i));
+            maxX = Math.max (maxX, coords.x (i));
+            minY = Math.min (minY, coords.y (i));
+            maxY = Math.max (maxY, coords.y (i));
+          }
+        double extent = Math.max ((double) maxX - minX, (double) maxY - minY);
+        double scale = extent > 0 ? (SIDE - 1) / extent : 0;
+
+        for (int i = 0; i < n; i++)
+          {
+            int x = (int) ((coords.x (i) - (double) minX) * scale);
+            int y = (int) ((coords.y (i) - (double) minY) * scale);
+            x = Math.min (x, SIDE - 1);
+            y = Math.min (y, SIDE - 1);
+            keys[i] = curve == Curve.Hilbert ? hilbert (x, y) : morton (x, y);
+          }
+        return keys;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The location indices in curve order.
+
+    public static int [] order (CoordArray coords, Curve curve)
+      { return SortIndex.argsort (keys (coords, curve)); }
+  }
@@ -0,0 +1,160 @@
+/**
+ *  Unit test for SpaceFillingCurve and OrderRenumbered.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.GraphUtil.isPathASpanningTree;
+import static CrossSpreadOrder.GraphUtil.pathWeight;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class SpaceFillingCurveTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Both curves start by filling the bottom-left corner, so the m x m
+  //  corner must map onto distances 0 to m*m-1. Consecutive Hilbert cells
+  //  must be adjacent.
+
+  @Test
+  public void curves ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      int m = 64;
+      int hilbertX [] = new int [m * m], hilbertY [] = new int [m * m];
+      boolean hilbertSeen [] = new boolean [m * m];
+      boolean mortonSeen [] = new boolean [m * m];
+      for (int x = 0; x < m; x++)
+      for (int y = 0; y < m; y++)
+        {
+          int d = SpaceFillingCurve.hilbert (x, y);
+          assertTrue (d < m * m && ! hilbertSeen[d]);
+          hilbertSeen[d] = true;
+          hilbertX[d] = x;
+          hilbertY[d] = y;
+
+          d = SpaceFillingCurve.morton (x, y);
+          assertTrue (d < m * m && ! mortonSeen[d]);
+          mortonSeen[d] = true;
+        }
+      for (int d = 1; d < m * m; d++)
+          assertEquals (1, Math.abs (hilbertX[d] - hilbertX[d-1]) +
+                           Math.abs (hilbertY[d] - hilbertY[d-1]));
+
+      int side = 1 << SpaceFillingCurve.ORDER;
+      assertEquals ((long) side * side - 1,
+                    SpaceFillingCurve.morton (side - 1, side - 1));
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Renumbering must give paths of the same weight. The lines have no
+  //  duplicate locations, which would break ties differently.
+
+  @Test
+  public void renumbered ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4001);
+      OrderBranchEliminate order = new OrderBranchEliminate ();
+      OrderRenumbered renumbered = new OrderRenumbered (order);
+      float total1 = 0, total2 = 0;
+      double time1 = 0, time2 = 0;
+
+      printf ("      n   Original  Renumbered%n");
+      for (int test = 0; test < 8; test++)
+        {
+          int n = test < 4 ? rand.nextInt (20) : 200 + rand.nextInt (400);
+          CoordArray coords = SpatialGridTest.randomCoords (rand, n, test % 2);
+          Weights weights = new WeightsEuclid (coords);
+
+          Timer timer = new Timer ();
+          int path1 [] = order.path (coords);
+          time1 += timer.elapsed ();
+          timer.restart ();
+          int path2 [] = renumbered.path (coords);
+          time2 += timer.elapsed ();
+
+          assertTrue (isPathASpanningTree (path2));
+          float weight1 = pathWeight (weights, path1);
+          float weight2 = pathWeight (weights, path2);
+          printf ("   %4d %10.3f %10.3f%n", n, weight1, weight2);
+          total1 += weight1;
+          total2 += weight2;
+        }
+      printf ("%n   Total %8.3f %10.3f%n", total1, total2);
+      printf ("   Time  %8.2f %10.2f s%n%n", time1, time2);
+      assertEquals (total1, total2, 0.001 * total1);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Renumbering must not change the segments: the same locations, in the
+  //  same order along each segment, up to reversal.
+
+  @Test
+  public void renumberedSegments ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4002);
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      order.setHierarchical (true);
+      OrderRenumbered renumbered = new OrderRenumbered (order);
+      MinSpanTree mst = new MinSpanTreePrims ();
+      Segmenter segmenter = new Segmenter ();
+
+      for (int test = 0; test < 40; test++)
+        {
+          int n = 3 + rand.nextInt (test < 20 ? 30 : 600);
+          CoordArray coords = SpatialGridTest.randomCoords (rand, n, test % 2);
+          int renumber [] = renumbered.renumber (coords);
+          CoordArray subset = coords.subset (renumber);
+
+          Segment segments1 [] = segmenter.segments (
+              mst.edges (coords), new WeightsEuclid (coords));
+          Segment segments2 [] = segmenter.segments (
+              mst.edges (subset), new WeightsEuclid (subset));
+          assertEquals (canonical (segments1, null),
+                        canonical (segments2, renumber));
+          assertEquals (order.solve (coords).numSegments (),
+                        renumbered.solve (coords).numSegments ());
+        }
+    }
+
+  //  Each segment as a list of original location numbers, starting from
+  //  its lower numbered end.
+
+  private static Set <List <Integer>> canonical (Segment segments [],
+                                                 int renumber [])
+    {
+      Set <List <Integer>> set = new HashSet <> ();
+      for (Segment segment : segments)
+        {
+          List <Integer> list = new ArrayList <> ();
+          for (int i = 0; i < segment.length (); i++)
+              list.add (renumber == null ? segment.index (i)
+                                         : renumber[segment.index (i)]);
+          if (list.get (0) > list.get (list.size () - 1))
+              Collections.reverse (list);
+          set.add (list);
+        }
+      return set;
+    }
+}
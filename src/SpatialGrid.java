@@ -0,0 +1,263 @@
+/*
+ *  A uniform grid over a set of coordinates, for finding nearby points
+ *  without examining every pair.
+ *
+ *  The bounding box of the points is divided into square cells holding about
+ *  two points each. A query examines rings of cells around the query point,
+ *  working outwards, and stops once no unexamined cell could hold a closer
+ *  point. For reasonably even point densities a query takes about constant
+ *  time.
+ *
+ *  Points can be removed, after which queries ignore them. This supports
+ *  searches such as "the nearest point not yet visited".
+ *
+ *  Distances are CoordArray.distanceHypot, the same as WeightsEuclid. Ties
+ *  are broken in favour of the lowest point number, so the results are
+ *  exactly those of a brute-force search.
+ *
+ *  A grid is not safe to share between threads if points are removed.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.Arrays;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class SpatialGrid
+{
+  private final CoordArray coords;
+  private final int n, numX, numY;
+  private final float xMin, yMin, cellSize;
+
+  //  The points of cell c are cellPoints[cellStart[c] ... cellStart[c+1]-1].
+
+  private final int cellStart [], cellPoints [];
+  private final int cellAlive [];
+  private final boolean removed [];
+  private int numAlive;
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public SpatialGrid (CoordArray coords)
+    {
+      this.coords = coords;
+      n = coords.length ();
+      removed = new boolean [n];
+      numAlive = n;
+
+      float xMin = Float.MAX_VALUE, xMax = -Float.MAX_VALUE,
+            yMin = Float.MAX_VALUE, yMax = -Float.MAX_VALUE;
+      for (int i = 0; i < n; i++)
+        {
+          xMin = Math.min (xMin, coords.x (i));
+          xMax = Math.max (xMax, coords.x (i));
+          yMin = Math.min (yMin, coords.y (i));
+          yMax = Math.max (yMax, coords.y (i));
+        }
+      if (n == 0)
+          xMin = xMax = yMin = yMax = 0;
+      this.xMin = xMin;
+      this.yMin = yMin;
+
+      //  Choose square cells holding about two points each.
+
+      double width = Math.max (xMax - xMin, 0), height = Math.max (yMax - yMin, 0);
+      double area = Math.max (width * height, 1E-30);
+      double size = Math.sqrt (2 * area / Math.max (n, 1));
+      size = Math.max (size, Math.max (width, height) / Math.max (n, 1));
+      if (! (size > 0))
+          size = 1;
+      cellSize = (float) size;
+      numX = Math.min (cellIndex (xMax, xMin) + 1, Math.max (n, 1));
+      numY = Math.min (cellIndex (yMax, yMin) + 1, Math.max (n, 1));
+
+      //  Bucket the points by cell, in increasing point order.
+
+      int numCells = numX * numY;
+      cellStart = new int [numCells + 1];
+      cellAlive = new int [numCells];
+      int cell [] = new int [n];
+      for (int i = 0; i < n; i++)
+        {
+          cell[i] = cell (coords.x (i), coords.y (i));
+          cellStart[cell[i] + 1] ++;
+          cellAlive[cell[i]] ++;
+        }
+      for (int c = 0; c < numCells; c++)
+          cellStart[c+1] += cellStart[c];
+      cellPoints = new int [n];
+      int fill [] = Arrays.copyOf (cellStart, numCells);
+      for (int i = 0; i < n; i++)
+          cellPoints[fill[cell[i]]++] = i;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  private int cellIndex (float value, float min)
+    { return (int) ((value - min) / cellSize); }
+
+  private int cellX (float x)
+    { return Math.max (0, Math.min (numX - 1, cellIndex (x, xMin))); }
+
+  private int cellY (float y)
+    { return Math.max (0, Math.min (numY - 1, cellIndex (y, yMin))); }
+
+  private int cell (float x, float y)
+    { return cellY (y) * numX + cellX (x); }
+
+  //////////////////////////////////////////////////////////////////////////////
+
+  public int size ()
+    { return numAlive; }
+
+  public boolean isRemoved (int i)
+    { return removed[i]; }
+
+  public void remove (int i)
+    {
+      if (removed[i])
+          return;
+      removed[i] = true;
+      cellAlive[cell (coords.x (i), coords.y (i))] --;
+      numAlive --;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The nearest point to point i, other than i itself, that has not been
+  //  removed. Returns -1 if there is none.
+
+  public int nearest (int i)
+    {
+      int nearest [] = nearest (i, 1);
+      return nearest.length == 0 ? -1 : nearest[0];
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The k nearest points to point i (excluding i and removed points), nearest
+  //  first. Fewer are returned if there are not enough points.
+
+  public int [] nearest (int i, int k)
+    {
+      assert k >= 0;
+      float qx = coords.x (i), qy = coords.y (i);
+      int cx = cellX (qx), cy = cellY (qy);
+
+      //  The best k so far, sorted by distance then point number.
+
+      int best [] = new int [k];
+      float bestDist [] = new float [k];
+      int numBest = 0;
+      int maxRing = Math.max (numX, numY);
+      for (int ring = 0; ring <= maxRing && k > 0; ring++)
+        {
+          if (numBest == k && ringDistance (qx, qy, cx, cy, ring) > bestDist[k-1])
+              break;
+          for (int y = Math.max (0, cy - ring);
+               y <= Math.min (numY - 1, cy + ring); y++)
+            {
+              boolean edgeRow = y == cy - ring || y == cy + ring;
+              int step = edgeRow ? 1 : 2 * ring;
+              for (int x = cx - ring; x <= cx + ring; x += Math.max (step, 1))
+                {
+                  if (x < 0 || x >= numX)
+                      continue;
+                  int c = y * numX + x;
+                  if (cellAlive[c] == 0)
+                      continue;
+                  for (int p = cellStart[c]; p < cellStart[c+1]; p++)
+                    {
+                      int j = cellPoints[p];
+                      if (j == i || removed[j])
+                          continue;
+                      float d = coords.distanceHypot (i, j);
+                      if (numBest == k && ! less (d, j, bestDist[k-1], best[k-1]))
+                          continue;
+
+                      //  Insert into the sorted best list.
+
+                      int pos = numBest < k ? numBest++ : k-1;
+                      while (pos > 0 && less (d, j, bestDist[pos-1], best[pos-1]))
+                        {
+                          best[pos] = best[pos-1];
+                          bestDist[pos] = bestDist[pos-1];
+                          pos--;
+                        }
+                      best[pos] = j;
+                      bestDist[pos] = d;
+                    }
+                }
+            }
+        }
+      return Arrays.copyOf (best, numBest);
+    }
+
+  private static boolean less (float d1, int j1, float d2, int j2)
+    { return d1 < d2 || (d1 == d2 && j1 < j2); }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  All points within "radius" of point i (excluding i and removed points),
+  //  in increasing point order.
+
+  public int [] within (int i, float radius)
+    {
+      float qx = coords.x (i), qy = coords.y (i);
+      int x0 = cellX (qx - radius), x1 = cellX (qx + radius),
+          y0 = cellY (qy - radius), y1 = cellY (qy + radius);
+      int found [] = new int [16];
+      int numFound = 0;
+      for (int y = y0; y <= y1; y++)
+      for (int x = x0; x <= x1; x++)
+        {
+          int c = y * numX + x;
+          if (cellAlive[c] == 0)
+              continue;
+          for (int p = cellStart[c]; p < cellStart[c+1]; p++)
+            {
+              int j = cellPoints[p];
+              if (j != i && ! removed[j] && coords.distanceHypot (i, j) <= radius)
+                {
+                  if (numFound == found.length)
+                      found = Arrays.copyOf (found, 2 * numFound);
+                  found[numFound++] = j;
+                }
+            }
+        }
+      found = Arrays.copyOf (found, numFound);
+      Arrays.sort (found);
+      return found;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The k nearest neighbours of every point, such as candidate edges for
+  //  heuristics that need not consider every pair.
+
+  public int [] [] neighbours (int k)
+    {
+      int neighbours [] [] = new int [n] [];
+      for (int i = 0; i < n; i++)
+          neighbours[i] = nearest (i, k);
+      return neighbours;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  A lower bound on the distance from (qx, qy), which lies in cell
+  //  (cx, cy), to any point in a cell "ring" cells away. Slightly reduced to
+  //  allow for rounding.
+
+  private float ringDistance (float qx, float qy, int cx, int cy, int ring)
+    {
+      if (ring == 0)
+          return 0;
+      float left = qx - (xMin + cx * cellSize),
+            right = xMin + (cx + 1) * cellSize - qx,
+            below = qy - (yMin + cy * cellSize),
+            above = yMin + (cy + 1) * cellSize - qy;
+      float edge = Math.max (0, Math.min (Math.min (left, right),
+                                          Math.min (below, above)));
+      return 0.999F * (edge + (ring - 1) * cellSize);
+    }
+}
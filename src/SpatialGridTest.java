@@ -0,0 +1,113 @@
+/**
+ *  Unit test for SpatialGrid.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class SpatialGridTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Compare the queries against brute force, as points are removed.
+
+  @Test
+  public void queries ()
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (3801);
+      for (int test = 0; test < 200; test++)
+        {
+          int n = rand.nextInt (300);
+          CoordArray coords = randomCoords (rand, n, test % 3);
+          SpatialGrid grid = new SpatialGrid (coords);
+          boolean removed [] = new boolean [n];
+
+          for (int step = 0; step < n; step++)
+            {
+              int i = rand.nextInt (n);
+              int k = 1 + rand.nextInt (8);
+              float radius = 0.2F * rand.nextFloat ();
+              assertArrayEquals (bruteNearest (coords, removed, i, k),
+                                 grid.nearest (i, k));
+              assertArrayEquals (bruteWithin (coords, removed, i, radius),
+                                 grid.within (i, radius));
+              int nearest [] = bruteNearest (coords, removed, i, 1);
+              assertEquals (nearest.length == 0 ? -1 : nearest[0],
+                            grid.nearest (i));
+
+              int r = rand.nextInt (n);
+              grid.remove (r);
+              removed[r] = true;
+            }
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Uniform, clustered along a thin line, or on a coarse lattice with
+  //  many ties.
+
+  static CoordArray randomCoords (Random rand, int n, int type)
+    {
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int i = 0; i < n; i++)
+          switch (type)
+            {
+              case 0:  coords.set (i, rand.nextFloat (), rand.nextFloat ());
+                       break;
+              case 1:  coords.set (i, 10 * rand.nextFloat (),
+                                   0.01F * rand.nextFloat ());
+                       break;
+              default: coords.set (i, rand.nextInt (10) / 10F,
+                                   rand.nextInt (10) / 10F);
+            }
+      return coords;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static int [] bruteNearest (CoordArray coords, boolean removed [],
+                                      int i, int k)
+    {
+      int n = coords.length ();
+      Integer candidates [] = new Integer [n];
+      int m = 0;
+      for (int j = 0; j < n; j++)
+          if (j != i && ! removed[j])
+              candidates[m++] = j;
+      Arrays.sort (candidates, 0, m, (a, b) ->
+        {
+          int c = Float.compare (coords.distanceHypot (i, a),
+                                 coords.distanceHypot (i, b));
+          return c != 0 ? c : Integer.compare (a, b);
+        });
+      int nearest [] = new int [Math.min (k, m)];
+      for (int j = 0; j < nearest.length; j++)
+          nearest[j] = candidates[j];
+      return nearest;
+    }
+
+  private static int [] bruteWithin (CoordArray coords, boolean removed [],
+                                     int i, float radius)
+    {
+      return IntStream.range (0, coords.length ())
+          .filter (j -> j != i && ! removed[j] &&
+                        coords.distanceHypot (i, j) <= radius)
+          .toArray ();
+    }
+}
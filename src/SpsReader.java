@@ -0,0 +1,370 @@
+/**
+ *  Read the shot or receiver points of an SPS (Shell Processing Support)
+ *  file, revision 2.1, passing each line of points on as soon as it has
+ *  been read, so that it can be ordered while the rest of the file is
+ *  still being read.
+ *
+ *  Only records starting with the chosen record type ('S' for shots in an
+ *  S-file, 'R' for receivers in an R-file) are read; headers and other
+ *  records are skipped. The fields used are, by column (from 1):
+ *
+ *     2-11    line number       F10.2
+ *     12-21   point number      F10.2
+ *     47-55   easting           F9.1
+ *     56-65   northing          F10.1
+ *
+ *  The file is mapped into memory a window at a time and the fields are
+ *  parsed straight from the bytes, so no Strings are made per record and
+ *  files much larger than memory can be read. Each line's points are kept
+ *  in primitive arrays.
+ *
+ *  SPS files normally list each line's points together, so by default a
+ *  line is complete as soon as a record for another line appears. If a
+ *  line's points are scattered through the file, call setGrouped (false)
+ *  and every line is instead passed on at the end of the file.
+ *
+ *  Eastings and northings in projected coordinates are too large to keep to
+ *  a tenth of a metre as floats, so the coordinates are given relative to an
+ *  origin: the easting and northing of the first record, rounded down to
+ *  whole metres (see originX and originY). Ordering does not depend on the
+ *  origin.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class SpsReader
+{
+  private static final double POWERS [] = { 1, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6,
+                                            1e7, 1e8, 1e9, 1e10 };
+
+  private final byte recordType;
+  private int window = 1 << 26;
+  private boolean grouped = true;
+  private int maxPending = 64;
+  private double originX = Double.NaN, originY = Double.NaN;
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The points of one line.
+
+  public static class Line
+    {
+      private final double lineNumber;
+      private final CoordArrayFloat coords;
+      private final double pointNumbers [];
+
+      Line (double lineNumber, CoordArrayFloat coords, double pointNumbers [])
+        {
+          this.lineNumber = lineNumber;
+          this.coords = coords;
+          this.pointNumbers = pointNumbers;
+        }
+
+      public double lineNumber ()
+        { return lineNumber; }
+
+      //  Relative to the reader's origin.
+
+      public CoordArrayFloat coords ()
+        { return coords; }
+
+      //  The point number of each location, in the same order as coords.
+
+      public double [] pointNumbers ()
+        { return pointNumbers; }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Receives each line when it is complete.
+
+  public interface Sink
+    {
+      void accept (Line line) throws IOException;
+    }
+
+  //  Receives each line together with its ordering.
+
+  public interface ResultSink
+    {
+      void accept (Line line, OrderResult result) throws IOException;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Read records of this type, such as 'S' or 'R'.
+
+  public SpsReader (char recordType)
+    {
+      assert recordType < 128;
+      this.recordType = (byte) recordType;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The number of bytes mapped at once. A record may not be longer.
+
+  void setWindow (int window)
+    {
+      assert window > 0;
+      this.window = window;
+    }
+
+  //  Whether each line's records are together in the file (see above).
+
+  void setGrouped (boolean grouped)
+    { this.grouped = grouped; }
+
+  //  The most lines "order" leaves waiting to be ordered before it stops
+  //  reading and waits for the oldest.
+
+  void setMaxPending (int maxPending)
+    {
+      assert maxPending > 0;
+      this.maxPending = maxPending;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  The origin of the coordinates of the last file read, or NaN if it had
+  //  no records.
+
+  public double originX ()
+    { return originX; }
+
+  public double originY ()
+    { return originY; }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Read the file, passing each line to the sink as soon as it is complete.
+  //  The sink is called from this thread.
+
+  public void read (Path file, Sink sink) throws IOException
+    {
+      originX = originY = Double.NaN;
+      Builder current = null;
+      HashSet <Double> done = new HashSet <> ();
+      LinkedHashMap <Double, Builder> lines = new LinkedHashMap <> ();
+      long recordNumber = 0;
+
+      try (FileChannel channel = FileChannel.open (file,
+                                                   StandardOpenOption.READ))
+        {
+          long size = channel.size ();
+          long position = 0;
+          while (position < size)
+            {
+              int length = (int) Math.min (window, size - position);
+              MappedByteBuffer map = channel.map (FileChannel.MapMode.READ_ONLY,
+                                                  position, length);
+
+              //  Stop after the last whole record in the window.
+
+              int end = length;
+              if (position + length < size)
+                {
+                  while (end > 0 && map.get (end - 1) != '\n')
+                      end--;
+                  if (end == 0)
+                      throw new IOException (String.format (
+                          "SPS record %d is longer than %d bytes",
+                          recordNumber + 1, window));
+                }
+
+              int start = 0;
+              while (start < end)
+                {
+                  int stop = start;
+                  while (stop < end && map.get (stop) != '\n')
+                      stop++;
+                  recordNumber++;
+                  if (map.get (start) == recordType)
+                    {
+                      int last = stop;
+                      if (last > start && map.get (last - 1) == '\r')
+                          last--;
+                      double lineNumber = field (map, start, last, 2, 11,
+                                                 recordNumber);
+                      double pointNumber = field (map, start, last, 12, 21,
+                                                  recordNumber);
+                      double easting = field (map, start, last, 47, 55,
+                                              recordNumber);
+                      double northing = field (map, start, last, 56, 65,
+                                               recordNumber);
+                      if (Double.isNaN (originX))
+                        {
+                          originX = Math.floor (easting);
+                          originY = Math.floor (northing);
+                        }
+
+                      //  Find the line's points.
+
+                      if (! grouped)
+                          current = lines.computeIfAbsent (lineNumber,
+                                                           Builder::new);
+                      else if (current == null ||
+                               current.lineNumber != lineNumber)
+                        {
+                          if (current != null)
+                              sink.accept (current.build ());
+                          if (! done.add (lineNumber))
+                              throw new IOException (String.format (
+                                  "SPS line %s is not together (record %d)",
+                                  lineNumber, recordNumber));
+                          current = new Builder (lineNumber);
+                        }
+                      current.add ((float) (easting - originX),
+                                   (float) (northing - originY), pointNumber);
+                    }
+                  start = stop + 1;
+                }
+              position += end;
+            }
+        }
+
+      if (grouped)
+        {
+          if (current != null)
+              sink.accept (current.build ());
+        }
+      else
+          for (Builder builder : lines.values ())
+              sink.accept (builder.build ());
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Read the file and order each line with the executor as soon as it is
+  //  complete, passing the lines and their orderings to the sink in file
+  //  order. The sink is called from this thread.
+
+  public void order (Path file, OrderExecutor executor, ResultSink sink)
+      throws IOException
+    {
+      ArrayDeque <Line> lines = new ArrayDeque <> ();
+      ArrayDeque <Future <OrderResult>> futures = new ArrayDeque <> ();
+      try
+        {
+          read (file, line ->
+            {
+              lines.add (line);
+              futures.add (executor.submit (line.coords ()));
+              if (futures.size () > maxPending)
+                  sink.accept (lines.remove (), result (futures.remove ()));
+            });
+          while (! futures.isEmpty ())
+              sink.accept (lines.remove (), result (futures.remove ()));
+        }
+      finally
+        {
+          for (Future <OrderResult> future : futures)
+              future.cancel (true);
+        }
+    }
+
+  private static OrderResult result (Future <OrderResult> future)
+    {
+      try
+        { return future.get (); }
+      catch (InterruptedException e)
+        {
+          Thread.currentThread ().interrupt ();
+          throw new IllegalStateException ("Interrupted while ordering", e);
+        }
+      catch (ExecutionException | CancellationException e)
+        { throw new IllegalStateException ("Line ordering failed", e); }
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  Parse the fixed-point number in columns "first" to "last" (from 1) of
+  //  the record in map[start, end).
+
+  private static double field (MappedByteBuffer map, int start, int end,
+                               int first, int last, long recordNumber)
+      throws IOException
+    {
+      int from = start + first - 1, to = Math.min (start + last, end);
+      while (from < to && map.get (from) == ' ')
+          from++;
+      while (to > from && map.get (to - 1) == ' ')
+          to--;
+
+      boolean negative = false;
+      if (from < to && (map.get (from) == '-' || map.get (from) == '+'))
+          negative = map.get (from++) == '-';
+
+      long mantissa = 0;
+      int numDigits = 0, decimals = -1;
+      boolean bad = false;
+      for (int i = from; i < to && ! bad; i++)
+        {
+          byte b = map.get (i);
+          if (b >= '0' && b <= '9')
+            {
+              mantissa = 10 * mantissa + (b - '0');
+              numDigits++;
+              if (decimals >= 0)
+                  decimals++;
+            }
+          else if (b == '.' && decimals < 0)
+              decimals = 0;
+          else
+              bad = true;
+        }
+      if (bad || numDigits == 0 || numDigits > 18 || decimals >= POWERS.length)
+          throw new IOException (String.format (
+              "SPS record %d has a bad number in columns %d-%d",
+              recordNumber, first, last));
+
+      double value = decimals > 0 ? mantissa / POWERS[decimals] : mantissa;
+      return negative ? -value : value;
+    }
+
+  //////////////////////////////////////////////////////////////////////////////
+  //  A line's points so far.
+
+  private static class Builder
+    {
+      final double lineNumber;
+      float x [] = new float [16], y [] = new float [16];
+      double pointNumbers [] = new double [16];
+      int n = 0;
+
+      Builder (double lineNumber)
+        { this.lineNumber = lineNumber; }
+
+      void add (float xi, float yi, double pointNumber)
+        {
+          if (n == x.length)
+            {
+              x = Arrays.copyOf (x, 2 * n);
+              y = Arrays.copyOf (y, 2 * n);
+              pointNumbers = Arrays.copyOf (pointNumbers, 2 * n);
+            }
+          x[n] = xi;
+          y[n] = yi;
+          pointNumbers[n] = pointNumber;
+          n++;
+        }
+
+      Line build ()
+        {
+          return new Line (lineNumber,
+                           new CoordArrayFloat (Arrays.copyOf (x, n),
+                                                Arrays.copyOf (y, n)),
+                           Arrays.copyOf (pointNumbers, n));
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/**
+ *  Unit test for SpsReader.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+import static CrossSpreadOrder.Print.printf;
+import static CrossSpreadOrder.SystemCall.className;
+import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+///////////////////////////////////////////////////////////////////////////////
+
+public class SpsReaderTest
+{
+  /////////////////////////////////////////////////////////////////////////////
+  //  Read a file of several lines, with windows much smaller than the file
+  //  and headers, receiver records and mixed line endings to skip.
+
+  @Test
+  public void read () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4801);
+      int numLines = 20;
+      double eastings [] [] = new double [numLines] [],
+             northings [] [] = new double [numLines] [];
+      StringBuilder text = new StringBuilder ();
+      text.append ("H00 SPS format version num.     SPS V2.1\n");
+      for (int line = 0; line < numLines; line++)
+        {
+          int n = 1 + rand.nextInt (300);
+          eastings[line] = new double [n];
+          northings[line] = new double [n];
+          for (int i = 0; i < n; i++)
+            {
+              eastings[line][i] = 600000 + rand.nextInt (200000) / 10.0;
+              northings[line][i] = 7000000 + rand.nextInt (200000) / 10.0;
+              text.append (record ('S', 1000 + line, 2000.5 + i,
+                                   eastings[line][i], northings[line][i]));
+              text.append (rand.nextBoolean () ? "\r\n" : "\n");
+              if (rand.nextInt (50) == 0)
+                  text.append (record ('R', 1, 1, 0, 0)).append ('\n');
+            }
+        }
+      text.setLength (text.length () - 1);
+      Path file = write (text);
+
+      try
+        {
+          for (int window : new int [] { 100, 4096, 1 << 26 })
+            {
+              SpsReader reader = new SpsReader ('S');
+              reader.setWindow (window);
+              ArrayList <SpsReader.Line> lines = new ArrayList <> ();
+              reader.read (file, lines::add);
+              assertEquals (numLines, lines.size ());
+              assertEquals (600000, reader.originX (), 200000);
+              for (int line = 0; line < numLines; line++)
+                {
+                  SpsReader.Line read = lines.get (line);
+                  assertEquals (1000 + line, read.lineNumber (), 0);
+                  int n = eastings[line].length;
+                  assertEquals (n, read.coords ().length ());
+                  for (int i = 0; i < n; i++)
+                    {
+                      assertEquals (2000.5 + i, read.pointNumbers ()[i], 0);
+                      assertEquals (eastings[line][i] - reader.originX (),
+                                    read.coords ().x (i), 0.01);
+                      assertEquals (northings[line][i] - reader.originY (),
+                                    read.coords ().y (i), 0.01);
+                    }
+                }
+            }
+        }
+      finally
+        { Files.delete (file); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Lines whose records are not together must be rejected unless grouping
+  //  is turned off, and bad numbers must be rejected.
+
+  @Test
+  public void scattered () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      StringBuilder text = new StringBuilder ();
+      for (int i = 0; i < 10; i++)
+          text.append (record ('R', 7 + i % 2, i, 1000 + i, 2000 - i))
+              .append ('\n');
+      Path file = write (text);
+      try
+        {
+          SpsReader reader = new SpsReader ('R');
+          boolean thrown = false;
+          try
+            { reader.read (file, line -> {}); }
+          catch (IOException e)
+            { thrown = true; }
+          assertTrue (thrown);
+
+          reader.setGrouped (false);
+          ArrayList <SpsReader.Line> lines = new ArrayList <> ();
+          reader.read (file, lines::add);
+          assertEquals (2, lines.size ());
+          assertEquals (7, lines.get (0).lineNumber (), 0);
+          assertArrayEquals (new double [] { 0, 2, 4, 6, 8 },
+                             lines.get (0).pointNumbers (), 0);
+          assertEquals (9, lines.get (1).coords ().x (4), 0);
+          assertEquals (-9, lines.get (1).coords ().y (4), 0);
+
+          Files.write (file, "R      12.5      1.0x".getBytes (
+              StandardCharsets.US_ASCII));
+          thrown = false;
+          try
+            { reader.read (file, line -> {}); }
+          catch (IOException e)
+            { thrown = true; }
+          assertTrue (thrown);
+        }
+      finally
+        { Files.delete (file); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Ordering while reading must give the same paths, in file order.
+
+  @Test
+  public void order () throws IOException
+    {
+      printf ("%s: %s%n%n", className (), methodName ());
+
+      Random rand = new Random (4803);
+      StringBuilder text = new StringBuilder ();
+      for (int line = 0; line < 40; line++)
+        {
+          int n = 1 + rand.nextInt (100);
+          for (int i = 0; i < n; i++)
+              text.append (record ('S', line, i,
+                                   500000 + 1000 * rand.nextDouble (),
+                                   6000000 + 10 * rand.nextDouble ()))
+                  .append ('\n');
+        }
+      Path file = write (text);
+
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      order.setHierarchical (true);
+      SpsReader reader = new SpsReader ('S');
+      reader.setMaxPending (3);
+      int numLines [] = new int [1];
+      try (OrderExecutor executor = new OrderExecutor (order, 2))
+        {
+          reader.order (file, executor, (line, result) ->
+            {
+              assertEquals (numLines[0]++, line.lineNumber (), 0);
+              assertArrayEquals (order.path (line.coords ()), result.path ());
+            });
+        }
+      finally
+        { Files.delete (file); }
+      assertEquals (40, numLines[0]);
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private static String record (char type, double line, double point,
+                                double easting, double northing)
+    {
+      return String.format ("%c%10.2f%10.2f%2s%2s%4s%4s%4s%2s%2s%-5s" +
+                            "%9.1f%10.1f%6.1f%3s%6s",
+                            type, line, point, "", "1", "G1", "0", "0", "",
+                            "", "", easting, northing, 0.0, "1", "235959");
+    }
+
+  private static Path write (CharSequence text) throws IOException
+    {
+      Path file = Files.createTempFile ("sps", ".s01");
+      Files.write (file, text.toString ().getBytes (
+          StandardCharsets.US_ASCII));
+      return file;
+    }
+}
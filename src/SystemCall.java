@@ -9,6 +9,7 @@ package CrossSpreadOrder;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CancellationException;
 
 public class SystemCall
 {
@@ -24,6 +25,16 @@ public class SystemCall
       return 1E-9 * bean.getCurrentThreadCpuTime ();
     }
 
+  //////////////////////////////////////////////////////////////////////////////
+  //  Long computations call this now and then so that they can be cancelled
+  //  by interrupting their thread. The interrupt status is left set.
+
+  public static void checkInterrupt ()
+    {
+      if (Thread.currentThread ().isInterrupted ())
+          throw new CancellationException ("Ordering was interrupted");
+    }
+
   //////////////////////////////////////////////////////////////////////////////
   //  Return name of method and class.
 
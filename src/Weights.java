@@ -33,4 +33,16 @@ public abstract class Weights
     ////////////////////////////////////////////////////////////////////////////
 
     public abstract float value (int i, int j);
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Weights stored as matrix rows can return them here, so that inner loops
+    //  can run over a contiguous array rather than calling "value". If row(i)
+    //  is not null then row(i)[j + rowOffset()] == value(i, j) for every j.
+    //  The row must not be modified.
+
+    public float [] row (int i)
+      { return null; }
+
+    public int rowOffset ()
+      { return 0; }
   }
\ No newline at end of file
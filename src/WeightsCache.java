@@ -0,0 +1,214 @@
+/*
+ *  Remember the weights of another weights object, for when these are
+ *  expensive to calculate (such as distances around obstacles) and the
+ *  algorithms ask for the same pairs over and over.
+ *
+ *  The cache holds a bounded number of weights in open-addressing hash
+ *  tables of primitive keys and values, so nothing is boxed. The tables are
+ *  split into stripes, each guarded by its own StampedLock. Lookups use the
+ *  lock's optimistic reads and so rarely block. A key may only be stored
+ *  within a short window of slots following its hash position. When the
+ *  window is full, a slot is evicted using the CLOCK policy: each slot has a
+ *  "referenced" bit that is set on every hit and cleared as the clock hand
+ *  passes, and the first slot found unreferenced is replaced.
+ *
+ *  This is safe to use from many threads at once, provided the underlying
+ *  weights are.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class WeightsCache extends Weights
+  {
+    private static final long empty = -1;
+    private static final int window = 8;
+
+    private final Weights weights;
+    private final Stripe stripes [];
+    private final int stripeBits, slotMask;
+    private final LongAdder hits = new LongAdder (), misses = new LongAdder (),
+                            evictions = new LongAdder ();
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Cache up to about "capacity" weights.
+
+    public WeightsCache (Weights weights, int capacity)
+      {
+        assert capacity > 0;
+        this.weights = weights;
+        setSymmetric (weights.isSymmetric ());
+        setTriangleInequality (weights.isTriangleInequality ());
+
+        //  Round up to powers of two, with at least a window per stripe.
+
+        int numStripes = Integer.highestOneBit (
+            Math.max (1, Math.min (64, capacity / (4 * window))));
+        int stripeSize = Math.max (window, Integer.highestOneBit (
+            Math.max (1, capacity / numStripes - 1)) << 1);
+        stripeBits = Integer.numberOfTrailingZeros (numStripes);
+        slotMask = stripeSize - 1;
+        stripes = new Stripe [numStripes];
+        for (int s = 0; s < numStripes; s++)
+            stripes[s] = new Stripe (stripeSize);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public long hits ()
+      { return hits.sum (); }
+
+    public long misses ()
+      { return misses.sum (); }
+
+    public long evictions ()
+      { return evictions.sum (); }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public float value (int i, int j)
+      {
+        assert i >= 0 && j >= 0;
+        if (isSymmetric () && i > j)
+          { int t = i; i = j; j = t; }
+        long key = (long) i << 32 | j;
+        long hash = mix (key);
+        Stripe stripe = stripes[(int) (hash >>> (64 - stripeBits)) &
+                                (stripes.length - 1)];
+        int home = (int) hash & slotMask;
+
+        float value = stripe.get (key, home, slotMask);
+        if (! Float.isNaN (value))
+          {
+            hits.increment ();
+            return value;
+          }
+        misses.increment ();
+        value = weights.value (i, j);
+        if (! Float.isNaN (value) && stripe.put (key, value, home, slotMask))
+            evictions.increment ();
+        return value;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Spread the bits of the key (the MurmurHash3 finalizer).
+
+    private static long mix (long key)
+      {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  One stripe of the cache. A weight that is not cached is returned as
+    //  NaN, so NaN weights are never cached.
+
+    private static class Stripe
+      {
+        private final StampedLock lock = new StampedLock ();
+        private final long keys [];
+        private final float values [];
+        private final boolean referenced [];
+        private int hand = 0;
+
+        Stripe (int size)
+          {
+            keys = new long [size];
+            values = new float [size];
+            referenced = new boolean [size];
+            Arrays.fill (keys, empty);
+          }
+
+        float get (long key, int home, int mask)
+          {
+            long stamp = lock.tryOptimisticRead ();
+            int slot = find (key, home, mask);
+            float value = slot < 0 ? Float.NaN : values[slot];
+            if (! lock.validate (stamp))
+              {
+                stamp = lock.readLock ();
+                try
+                  {
+                    slot = find (key, home, mask);
+                    value = slot < 0 ? Float.NaN : values[slot];
+                  }
+                finally
+                  { lock.unlockRead (stamp); }
+              }
+            if (slot >= 0)
+                referenced[slot] = true;  // A lost update only affects eviction.
+            return value;
+          }
+
+        //  Slots are never emptied once filled, so the search can stop at
+        //  the first empty slot.
+
+        private int find (long key, int home, int mask)
+          {
+            for (int k = 0; k < window; k++)
+              {
+                int slot = (home + k) & mask;
+                long slotKey = keys[slot];
+                if (slotKey == key)
+                    return slot;
+                if (slotKey == empty)
+                    return -1;
+              }
+            return -1;
+          }
+
+        //  Returns true if another weight was evicted.
+
+        boolean put (long key, float value, int home, int mask)
+          {
+            long stamp = lock.writeLock ();
+            try
+              {
+                for (int k = 0; k < window; k++)
+                  {
+                    int slot = (home + k) & mask;
+                    if (keys[slot] == key)
+                        return false;
+                    if (keys[slot] == empty)
+                      {
+                        keys[slot] = key;
+                        values[slot] = value;
+                        return false;
+                      }
+                  }
+
+                //  The window is full. Sweep it with the clock hand, giving
+                //  referenced slots a second chance.
+
+                int slot = 0;
+                for (int k = 0; k < 2 * window; k++)
+                  {
+                    slot = (home + (hand++ % window)) & mask;
+                    if (! referenced[slot])
+                        break;
+                    referenced[slot] = false;
+                  }
+                hand %= window;
+                keys[slot] = key;
+                values[slot] = value;
+                referenced[slot] = false;
+                return true;
+              }
+            finally
+              { lock.unlockWrite (stamp); }
+          }
+      }
+  }
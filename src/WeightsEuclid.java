@@ -15,13 +15,16 @@ public class WeightsEuclid extends WeightsMatrix
     ////////////////////////////////////////////////////////////////////////////
 
     public WeightsEuclid (Coord coords [])
+      { this (new CoordArrayFloat (coords)); }
+
+    public WeightsEuclid (CoordArray coords)
       {
-        super (new float [coords.length] [coords.length]);
+        super (new float [coords.length ()] [coords.length ()]);
 
-        n = coords.length;
+        n = coords.length ();
         for (int i = 0; i < n-1; i++)
         for (int j = i+1; j < n; j++)
-            matrix[i][j] = matrix[j][i] = coords[i].distanceHypot (coords[j]);
+            matrix[i][j] = matrix[j][i] = coords.distanceHypot (i, j);
 
         setTriangleInequality (true);
         setSymmetric (true);
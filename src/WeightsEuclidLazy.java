@@ -0,0 +1,35 @@
+/*
+ *  Weights based on coordinate distances, calculated whenever they are
+ *  requested rather than stored in a matrix. This takes O(n) memory instead
+ *  of O(n**2), and so is suitable for lines too large for WeightsEuclid.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class WeightsEuclidLazy extends Weights
+  {
+    private final CoordArray coords;
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public WeightsEuclidLazy (Coord coords [])
+      { this (new CoordArrayFloat (coords)); }
+
+    public WeightsEuclidLazy (CoordArray coords)
+      {
+        this.coords = coords;
+        setTriangleInequality (true);
+        setSymmetric (true);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public float value (int i, int j)
+      { return coords.distanceHypot (i, j); }
+  }
@@ -12,13 +12,16 @@ package CrossSpreadOrder;
 public class WeightsEuclidSq extends WeightsMatrix
   {
     public WeightsEuclidSq (Coord coords [])
+      { this (new CoordArrayFloat (coords)); }
+
+    public WeightsEuclidSq (CoordArray coords)
       {
-        super (new float [coords.length] [coords.length]);
+        super (new float [coords.length ()] [coords.length ()]);
 
-        n = coords.length;
+        n = coords.length ();
         for (int i = 0; i < n-1; i++)
         for (int j = i+1; j < n; j++)
-            matrix[i][j] = matrix[j][i] = coords[i].distanceSq (coords[j]);
+            matrix[i][j] = matrix[j][i] = coords.distanceSq (i, j);
 
         setTriangleInequality (false);
         setSymmetric (true);
@@ -0,0 +1,144 @@
+/*
+ *  Symmetric weights read from a file that is mapped into memory, such as
+ *  precomputed travel times that are not simple distances. Nothing is copied
+ *  onto the heap, and the operating system shares the file's pages between
+ *  all processes that have it open.
+ *
+ *  The file has a 16-byte header of four little-endian ints:
+ *
+ *     magic    0x57535343 ("CSSW")
+ *     version  1
+ *     n        number of vertices
+ *     flags    bit 0 set if the weights obey the triangle inequality
+ *
+ *  followed by the packed triangle of little-endian floats described in
+ *  WeightsTriangle. The weight between i and j (i > j) is therefore at
+ *  byte 16 + 4 * (i*(i-1)/2 + j). Method "write" creates such a file.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class WeightsMapped extends WeightsTriangle implements AutoCloseable
+  {
+    static final int magic = 0x57535343, version = 1, headerSize = 16;
+
+    //  Each mapping holds 2**chunkBits floats, as a mapping is limited to 2 GB.
+
+    private static final int chunkBits = 28;
+    private static final long chunkMask = (1L << chunkBits) - 1;
+    private FloatBuffer chunks [];
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private WeightsMapped (int n, FileChannel channel) throws IOException
+      {
+        super (n);
+        long size = size (n);
+        if (channel.size () < headerSize + 4 * size)
+            throw new IOException ("Weights file is truncated");
+
+        int numChunks = (int) ((size + chunkMask) >>> chunkBits);
+        chunks = new FloatBuffer [numChunks];
+        for (int c = 0; c < numChunks; c++)
+          {
+            long start = (long) c << chunkBits;
+            long length = Math.min (size - start, 1L << chunkBits);
+            chunks[c] = channel.map (FileChannel.MapMode.READ_ONLY,
+                                     headerSize + 4 * start, 4 * length)
+                               .order (ByteOrder.LITTLE_ENDIAN)
+                               .asFloatBuffer ();
+          }
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Map a weights file.
+
+    public static WeightsMapped open (Path file) throws IOException
+      {
+        try (FileChannel channel = FileChannel.open (file,
+                                                     StandardOpenOption.READ))
+          {
+            ByteBuffer header = ByteBuffer.allocate (headerSize)
+                                          .order (ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining ())
+                if (channel.read (header, header.position ()) < 0)
+                    throw new IOException ("Weights file is truncated");
+            header.flip ();
+            if (header.getInt () != magic)
+                throw new IOException ("Not a weights file: " + file);
+            if (header.getInt () != version)
+                throw new IOException ("Unsupported weights file version");
+            int n = header.getInt (), flags = header.getInt ();
+            if (n < 0)
+                throw new IOException ("Bad weights file header");
+
+            WeightsMapped weights = new WeightsMapped (n, channel);
+            weights.setTriangleInequality ((flags & 1) != 0);
+            return weights;
+          }
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Write the weights between vertices 0 to n-1 to a file. The weights
+    //  must be symmetric.
+
+    public static void write (Path file, int n, Weights weights)
+        throws IOException
+      {
+        assert n >= 0;
+        assert weights.isSymmetric ();
+        try (FileChannel channel = FileChannel.open (file,
+                 StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                 StandardOpenOption.TRUNCATE_EXISTING))
+          {
+            ByteBuffer buffer = ByteBuffer.allocate (1 << 16)
+                                          .order (ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt (magic).putInt (version).putInt (n)
+                  .putInt (weights.isTriangleInequality () ? 1 : 0);
+            for (int i = 1; i < n; i++)
+            for (int j = 0; j < i; j++)
+              {
+                if (! buffer.hasRemaining ())
+                    drain (buffer, channel);
+                buffer.putFloat (weights.value (i, j));
+              }
+            drain (buffer, channel);
+          }
+      }
+
+    private static void drain (ByteBuffer buffer, FileChannel channel)
+        throws IOException
+      {
+        buffer.flip ();
+        while (buffer.hasRemaining ())
+            channel.write (buffer);
+        buffer.clear ();
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected float get (long index)
+      { return chunks[(int) (index >>> chunkBits)].get ((int) (index & chunkMask)); }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Release the mappings. (Java 17 cannot unmap a file immediately; the
+    //  pages are unmapped when the buffer objects are collected.)
+
+    @Override
+    public void close ()
+      { chunks = null; }
+  }
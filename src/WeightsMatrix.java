@@ -60,4 +60,10 @@ public class WeightsMatrix extends Weights
         assert j >= 0 && j < n : "j = " + j;
         return matrix[i][j];
       }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public float [] row (int i)
+      { return matrix[i]; }
   }
@@ -0,0 +1,47 @@
+/*
+ *  Symmetric weights stored as a packed triangle in a float array.
+ *  This is limited to about 65,000 vertices.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class WeightsPacked extends WeightsTriangleWritable
+  {
+    private final float packed [];
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private WeightsPacked (int n)
+      {
+        super (n);
+        assert size (n) <= Integer.MAX_VALUE - 8 : "n = " + n;
+        packed = new float [(int) size (n)];
+      }
+
+    public WeightsPacked (CoordArray coords)
+      {
+        this (coords.length ());
+        fill (coords);
+      }
+
+    public WeightsPacked (int n, Weights weights)
+      {
+        this (n);
+        fill (weights);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected float get (long index)
+      { return packed[(int) index]; }
+
+    @Override
+    protected void put (long index, float value)
+      { packed[(int) index] = value; }
+  }
@@ -0,0 +1,136 @@
+/*
+ *  Symmetric weights stored as a packed triangle outside the Java heap,
+ *  in direct buffers. The heap then holds only a few small objects no matter
+ *  how large the line is, so the weights add nothing to garbage collection.
+ *
+ *  Call "close" once the weights are no longer needed. The memory is then
+ *  freed at once through sun.misc.Unsafe.invokeCleaner (in the
+ *  jdk.unsupported module), rather than whenever the buffer objects happen
+ *  to be collected. Closing twice does nothing, and using the weights after
+ *  closing throws IllegalStateException. Don't close the weights while
+ *  another thread may still be reading them.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class WeightsPackedDirect extends WeightsTriangleWritable
+                                 implements AutoCloseable
+  {
+    //  Each buffer holds 2**chunkBits floats, as a buffer is limited to 2 GB.
+
+    private static final int chunkBits = 28;
+    private static final long chunkMask = (1L << chunkBits) - 1;
+    private ByteBuffer buffers [];
+    private FloatBuffer chunks [];
+
+    //  Unsafe.invokeCleaner, found by reflection as it is not a public API.
+    //  If it is missing, the memory is left to the garbage collector.
+
+    private static final Object unsafe;
+    private static final Method invokeCleaner;
+
+    static
+      {
+        Object theUnsafe = null;
+        Method cleaner = null;
+        try
+          {
+            Class<?> unsafeClass = Class.forName ("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField ("theUnsafe");
+            field.setAccessible (true);
+            theUnsafe = field.get (null);
+            cleaner = unsafeClass.getMethod ("invokeCleaner", ByteBuffer.class);
+          }
+        catch (ReflectiveOperationException | RuntimeException e)
+          { cleaner = null; }
+        unsafe = theUnsafe;
+        invokeCleaner = cleaner;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    private WeightsPackedDirect (int n)
+      {
+        super (n);
+        long size = size (n);
+        int numChunks = (int) ((size + chunkMask) >>> chunkBits);
+        buffers = new ByteBuffer [numChunks];
+        chunks = new FloatBuffer [numChunks];
+        for (int c = 0; c < numChunks; c++)
+          {
+            long length = Math.min (size - ((long) c << chunkBits),
+                                    1L << chunkBits);
+            buffers[c] = ByteBuffer.allocateDirect (4 * (int) length)
+                                   .order (ByteOrder.nativeOrder ());
+            chunks[c] = buffers[c].asFloatBuffer ();
+          }
+      }
+
+    public WeightsPackedDirect (CoordArray coords)
+      {
+        this (coords.length ());
+        fill (coords);
+      }
+
+    public WeightsPackedDirect (int n, Weights weights)
+      {
+        this (n);
+        fill (weights);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    protected float get (long index)
+      {
+        if (chunks == null)
+            throw new IllegalStateException ("Weights have been closed");
+        return chunks[(int) (index >>> chunkBits)].get ((int) (index & chunkMask));
+      }
+
+    @Override
+    protected void put (long index, float value)
+      {
+        if (chunks == null)
+            throw new IllegalStateException ("Weights have been closed");
+        chunks[(int) (index >>> chunkBits)].put ((int) (index & chunkMask), value);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void close ()
+      {
+        if (chunks == null)
+            return;
+        ByteBuffer closing [] = buffers;
+        chunks = null;
+        buffers = null;
+        for (ByteBuffer buffer : closing)
+            free (buffer);
+      }
+
+    //  Free a buffer from ByteBuffer.allocateDirect at once. It must not be
+    //  used again, nor any view of it.
+
+    static void free (ByteBuffer buffer)
+      {
+        if (invokeCleaner == null)
+            return;
+        try
+          { invokeCleaner.invoke (unsafe, buffer); }
+        catch (ReflectiveOperationException e)
+          { throw new IllegalStateException ("Can't free direct buffer", e); }
+      }
+  }
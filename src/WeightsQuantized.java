@@ -0,0 +1,123 @@
+/*
+ *  Weights rounded to a whole number of units, each stored in 16 bits.
+ *
+ *  The exact Shortest Hamiltonian Path solvers only compare sums of weights,
+ *  so they don't need full float precision. Storing each weight as a char
+ *  halves the memory of a float matrix, which keeps the matrices of 50-vertex
+ *  problems within the processor caches. Sums of units are also exact, so
+ *  the solutions don't depend on the order in which weights are added.
+ *
+ *  A weight w is stored as the integer q = round(w / scale), where q is at
+ *  most 65535, and "value" returns q * scale. "units" returns q itself, and
+ *  "unitWeights" returns weights whose values are q. Sums of up to 256 such
+ *  values are below 2**24 and so are exact even in float arithmetic.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public class WeightsQuantized extends Weights
+  {
+    static final int maxUnits = Character.MAX_VALUE;
+
+    private final int n;
+    private final float scale;
+    private final char units [];
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Quantize the weights between vertices 0 to n-1, choosing the scale so
+    //  that the largest weight is maxUnits.
+
+    public WeightsQuantized (int n, Weights weights)
+      { this (n, weights, scale (n, weights)); }
+
+    public WeightsQuantized (int n, Weights weights, float scale)
+      {
+        assert n >= 0;
+        assert scale > 0;
+        this.n = n;
+        this.scale = scale;
+        units = new char [n * n];
+        for (int i = 0; i < n; i++)
+        for (int j = 0; j < n; j++)
+          {
+            long q = i == j ? 0 : Math.round (weights.value (i, j) / scale);
+            assert q >= 0 && q <= maxUnits : "weight out of range = " + q;
+            units[i * n + j] = (char) q;
+          }
+        setSymmetric (weights.isSymmetric ());
+      }
+
+    private WeightsQuantized (int n, float scale, char units [],
+                              boolean symmetric)
+      {
+        this.n = n;
+        this.scale = scale;
+        this.units = units;
+        setSymmetric (symmetric);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The weights between vertices[start] ... vertices[end-1], renumbered
+    //  0 ... end-start-1, with the same scale.
+
+    public WeightsQuantized resequence (int vertices [], int start, int end)
+      {
+        int m = end - start;
+        char subUnits [] = new char [m * m];
+        for (int i = 0; i < m; i++)
+        for (int j = 0; j < m; j++)
+            subUnits[i * m + j] = units[vertices[start + i] * n +
+                                        vertices[start + j]];
+        return new WeightsQuantized (m, scale, subUnits, isSymmetric ());
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  The smallest scale with which no weight exceeds maxUnits.
+
+    static float scale (int n, Weights weights)
+      {
+        float max = 0;
+        for (int i = 0; i < n; i++)
+        for (int j = 0; j < n; j++)
+            if (i != j)
+                max = Math.max (max, weights.value (i, j));
+        return max == 0 ? 1 : max / maxUnits;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    public float scale ()
+      { return scale; }
+
+    public int units (int i, int j)
+      { return units[i * n + j]; }
+
+    @Override
+    public float value (int i, int j)
+      {
+        assert i >= 0 && i < n : "i = " + i;
+        assert j >= 0 && j < n : "j = " + j;
+        return units[i * n + j] * scale;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Weights whose values are the units. Rounding can break the triangle
+    //  inequality, so it is not claimed.
+
+    public Weights unitWeights ()
+      {
+        return new Weights ()
+          {
+            { setSymmetric (WeightsQuantized.this.isSymmetric ()); }
+
+            @Override
+            public float value (int i, int j)
+              { return units[i * n + j]; }
+          };
+      }
+  }
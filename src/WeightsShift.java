@@ -21,6 +21,7 @@ public class WeightsShift extends Weights
         this.weights = weights;
         this.shift = shift;
         setTriangleInequality (weights.isTriangleInequality ());
+        setSymmetric (weights.isSymmetric ());
       }
 
     ////////////////////////////////////////////////////////////////////////////
@@ -28,4 +29,12 @@ public class WeightsShift extends Weights
     @Override
     public float value (int i, int j)
       { return weights.value (i + shift, j + shift); }
-  }
\ No newline at end of file
+
+    @Override
+    public float [] row (int i)
+      { return weights.row (i + shift); }
+
+    @Override
+    public int rowOffset ()
+      { return weights.rowOffset () + shift; }
+  }
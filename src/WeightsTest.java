@@ -9,10 +9,17 @@ package CrossSpreadOrder;
 import static CrossSpreadOrder.Print.printf;
 import static CrossSpreadOrder.SystemCall.className;
 import static CrossSpreadOrder.SystemCall.methodName;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Random;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -189,6 +196,217 @@ public class WeightsTest
       printf ("%n");
     }
 
+  /////////////////////////////////////////////////////////////////////////////
+  //  Test WeightsPacked, WeightsPackedDirect and CoordArrayDirect against
+  //  WeightsEuclid.
+
+  @Test
+  public void packed ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+
+      Random rand = new Random (3201);
+
+      int numTests = 200;
+      for (int test = 0; test < numTests; test++)
+        {
+          int n = rand.nextInt (150);
+          CoordArrayFloat coords = new CoordArrayFloat (n);
+          for (int i = 0; i < n; i++)
+              coords.set (i, rand.nextFloat(), rand.nextFloat());
+
+          Weights weight1 = new WeightsEuclid (coords);
+          Weights weight2 = new WeightsPacked (coords);
+          Weights weight3 = new WeightsPacked (n, weight1);
+          try (CoordArrayDirect coordsDirect = new CoordArrayDirect (coords);
+               WeightsPackedDirect weight4 =
+                   new WeightsPackedDirect (coordsDirect))
+            {
+              assertTrue (weight2.isSymmetric ());
+              assertTrue (weight4.isTriangleInequality ());
+              for (int i = 0; i < n; i++)
+              for (int j = 0; j < n; j++)
+                {
+                  float value = weight1.value (i, j);
+                  assertTrue (weight2.value (i, j) == value);
+                  assertTrue (weight3.value (i, j) == value);
+                  assertTrue (weight4.value (i, j) == value);
+                }
+            }
+        }
+
+      //  The orderings must not depend on how the weights are stored.
+
+      for (int test = 0; test < 10; test++)
+        {
+          Coord coords [] = new Coord [20 + rand.nextInt (200)];
+          for (int i = 0; i < coords.length; i++)
+              coords[i] = new Coord (10 * rand.nextFloat(), rand.nextFloat());
+          OrderSegmentSHP order = new OrderSegmentSHP ();
+          order.setHierarchical (true);
+          int path [] = order.path (coords);
+          for (OrderLocns.Storage storage : OrderLocns.Storage.values ())
+            {
+              order.setStorage (storage);
+              assertArrayEquals (path, order.path (coords));
+            }
+        }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Closing direct storage must free its memory at once, and anything
+  //  closed must throw rather than read freed memory.
+
+  @Test
+  public void closed ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+
+      Random rand = new Random (3301);
+      int n = 2000;
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int i = 0; i < n; i++)
+          coords.set (i, rand.nextFloat(), rand.nextFloat());
+
+      long before = directMemory ();
+      CoordArrayDirect coordsDirect = new CoordArrayDirect (coords);
+      WeightsPackedDirect weights = new WeightsPackedDirect (coordsDirect);
+      long used = directMemory () - before;
+      assertTrue (used >= 4L * n * (n - 1) / 2);
+      assertEquals (coords.distanceHypot (3, 7), weights.value (3, 7), 0);
+
+      weights.close ();
+      coordsDirect.close ();
+      assertEquals (before, directMemory ());
+      printf ("   %d bytes freed%n%n", used);
+
+      assertTrue (isRejected (() -> weights.value (3, 7)));
+      assertTrue (isRejected (() -> coordsDirect.x (3)));
+      assertTrue (isRejected (() -> coordsDirect.set (3, 0, 0)));
+      weights.close ();
+      coordsDirect.close ();
+      assertEquals (before, directMemory ());
+    }
+
+  private static boolean isRejected (Runnable use)
+    {
+      try
+        { use.run (); }
+      catch (IllegalStateException e)
+        { return true; }
+      return false;
+    }
+
+  private static long directMemory ()
+    {
+      for (BufferPoolMXBean pool :
+             ManagementFactory.getPlatformMXBeans (BufferPoolMXBean.class))
+          if (pool.getName ().equals ("direct"))
+              return pool.getMemoryUsed ();
+      return 0;
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Test WeightsMapped by writing and mapping a file.
+
+  @Test
+  public void mapped () throws IOException
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+
+      Random rand = new Random (3301);
+      Path file = Files.createTempFile ("weights", ".bin");
+      try
+        {
+          for (int test = 0; test < 20; test++)
+            {
+              int n = rand.nextInt (300);
+              CoordArrayFloat coords = new CoordArrayFloat (n);
+              for (int i = 0; i < n; i++)
+                  coords.set (i, 10 * rand.nextFloat(), rand.nextFloat());
+              Weights weight1 = new WeightsEuclid (coords);
+              WeightsMapped.write (file, n, weight1);
+
+              try (WeightsMapped weight2 = WeightsMapped.open (file))
+                {
+                  assertTrue (weight2.isTriangleInequality ());
+                  for (int i = 0; i < n; i++)
+                  for (int j = 0; j < n; j++)
+                      assertTrue (weight1.value (i, j) == weight2.value (i, j));
+
+                  OrderSegmentSHP order1 = new OrderSegmentSHP ();
+                  order1.setHierarchical (true);
+                  assertArrayEquals (order1.path (n, weight1),
+                                     order1.path (n, weight2));
+                  OrderBranchEliminate order2 = new OrderBranchEliminate ();
+                  assertArrayEquals (order2.path (n, weight1),
+                                     order2.path (n, weight2));
+                }
+            }
+
+          //  A file that is not a weights file must be rejected.
+
+          Files.write (file, new byte [] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10,
+                                           11, 12, 13, 14, 15, 16 });
+          boolean thrown = false;
+          try
+            { WeightsMapped.open (file); }
+          catch (IOException e)
+            { thrown = true; }
+          assertTrue (thrown);
+        }
+      finally
+        { Files.delete (file); }
+    }
+
+  /////////////////////////////////////////////////////////////////////////////
+  //  Test WeightsCache, including from many threads at once with a cache
+  //  small enough to force evictions.
+
+  @Test
+  public void cache ()
+    {
+      printf ("%s: %s%n%n", className(), methodName());
+
+      Random rand = new Random (3401);
+      int n = 300;
+      CoordArrayFloat coords = new CoordArrayFloat (n);
+      for (int i = 0; i < n; i++)
+          coords.set (i, rand.nextFloat(), rand.nextFloat());
+      Weights weight1 = new WeightsEuclid (coords);
+
+      WeightsCache weight2 = new WeightsCache (weight1, 100000);
+      for (int pass = 0; pass < 2; pass++)
+      for (int i = 0; i < n; i++)
+      for (int j = 0; j < n; j++)
+          assertTrue (weight1.value (i, j) == weight2.value (i, j));
+      printf ("   Hits %d, misses %d, evictions %d%n",
+              weight2.hits (), weight2.misses (), weight2.evictions ());
+      assertEquals (2L * n * n, weight2.hits () + weight2.misses ());
+      assertTrue (weight2.hits () >= n * n);
+
+      WeightsCache weight3 = new WeightsCache (weight1, 1000);
+      IntStream.range (0, 8).parallel ().forEach (thread ->
+        {
+          Random threadRand = new Random (thread);
+          for (int k = 0; k < 200000; k++)
+            {
+              int i = threadRand.nextInt (n), j = threadRand.nextInt (n);
+              assertTrue (weight1.value (i, j) == weight3.value (i, j));
+            }
+        });
+      printf ("   Hits %d, misses %d, evictions %d%n%n",
+              weight3.hits (), weight3.misses (), weight3.evictions ());
+      assertTrue (weight3.evictions () > 0);
+
+      //  Orderings must be unchanged.
+
+      OrderSegmentSHP order = new OrderSegmentSHP ();
+      order.setHierarchical (true);
+      assertArrayEquals (order.path (n, weight1),
+                         order.path (n, new WeightsCache (weight1, 5000)));
+    }
+
   /////////////////////////////////////////////////////////////////////////////
 
   private int [] shuffle (Random rand, int n)
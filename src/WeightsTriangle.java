@@ -0,0 +1,55 @@
+/*
+ *  Abstract base class for symmetric weights stored as a packed triangle,
+ *  which takes half the memory of a full matrix. The weight between i and j
+ *  (i > j) is stored at index i*(i-1)/2 + j. The diagonal is always zero
+ *  and is not stored. Subclasses that fill the triangle themselves extend
+ *  WeightsTriangleWritable.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public abstract class WeightsTriangle extends Weights
+  {
+    protected final int n;
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    protected WeightsTriangle (int n)
+      {
+        assert n >= 0;
+        this.n = n;
+        setSymmetric (true);
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Number of stored weights for n vertices.
+
+    static long size (int n)
+      { return (long) n * (n-1) / 2; }
+
+    static long index (int i, int j)
+      {
+        if (i < j)
+          { int t = i; i = j; j = t; }
+        return (long) i * (i-1) / 2 + j;
+      }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    protected abstract float get (long index);
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public float value (int i, int j)
+      {
+        assert i >= 0 && i < n : "i = " + i;
+        assert j >= 0 && j < n : "j = " + j;
+        return i == j ? 0 : get (index (i, j));
+      }
+  }
@@ -0,0 +1,47 @@
+/*
+ *  Abstract base class for packed triangle weights that are filled in
+ *  memory, either from coordinates or from other weights.
+ *
+ *  Copyright (c) 2023 Stewart Trickett
+ *  Licensed under the MIT License (see LICENSE.md file)
+ */
+
+package CrossSpreadOrder;
+
+////////////////////////////////////////////////////////////////////////////////
+
+public abstract class WeightsTriangleWritable extends WeightsTriangle
+  {
+    protected WeightsTriangleWritable (int n)
+      { super (n); }
+
+    ////////////////////////////////////////////////////////////////////////////
+
+    protected abstract void put (long index, float value);
+
+    ////////////////////////////////////////////////////////////////////////////
+    //  Fill with the distances between coordinates, in the same way as
+    //  WeightsEuclid.
+
+    protected void fill (CoordArray coords)
+      {
+        assert coords.length () == n;
+        long k = 0;
+        for (int i = 1; i < n; i++)
+        for (int j = 0; j < i; j++)
+            put (k++, coords.distanceHypot (i, j));
+        setTriangleInequality (true);
+      }
+
+    //  Fill from other symmetric weights.
+
+    protected void fill (Weights weights)
+      {
+        assert weights.isSymmetric ();
+        long k = 0;
+        for (int i = 1; i < n; i++)
+        for (int j = 0; j < i; j++)
+            put (k++, weights.value (i, j));
+        setTriangleInequality (weights.isTriangleInequality ());
+      }
+  }